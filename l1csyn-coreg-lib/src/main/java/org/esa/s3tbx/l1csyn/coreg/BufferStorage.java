@@ -0,0 +1,141 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Allocates the buffers holding the correspondence indices and the orphan rasters.
+ * <p>
+ * The buffers are either allocated on the Java heap, as direct buffers outside of the heap or as memory-mapped
+ * scratch files. The latter two do not add to the heap and are not moved by the garbage collector, so the heap only
+ * needs to be sized for the tile cache. Direct buffers are limited by {@code -XX:MaxDirectMemorySize}. Memory-mapped
+ * buffers are backed by the file system cache, their scratch files are deleted as soon as they are mapped. In all
+ * cases the buffers are released when they are garbage collected.
+ * <p>
+ * The values are read with the absolute get methods, so the buffers can be read concurrently without copying.
+ */
+public abstract class BufferStorage {
+
+    public static final String HEAP_NAME = "Heap";
+    public static final String DIRECT_NAME = "Direct";
+    public static final String MAPPED_NAME = "Mapped";
+
+    /**
+     * Allocates the buffers on the Java heap.
+     */
+    public static final BufferStorage HEAP = new BufferStorage(HEAP_NAME) {
+        @Override
+        public IntBuffer allocateInts(int length) {
+            return IntBuffer.allocate(length);
+        }
+
+        @Override
+        public FloatBuffer allocateFloats(int length) {
+            return FloatBuffer.allocate(length);
+        }
+
+        @Override
+        ByteBuffer allocateBytes(long numBytes) {
+            throw new IllegalStateException("Not used for heap buffers.");
+        }
+    };
+
+    /**
+     * Allocates direct buffers outside of the Java heap.
+     */
+    public static final BufferStorage DIRECT = new BufferStorage(DIRECT_NAME) {
+        @Override
+        ByteBuffer allocateBytes(long numBytes) {
+            return ByteBuffer.allocateDirect((int) numBytes);
+        }
+    };
+
+    private final String name;
+
+    private BufferStorage(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Allocates the buffers as memory-mapped scratch files.
+     *
+     * @param scratchDir the directory the scratch files are created in
+     */
+    public static BufferStorage mapped(File scratchDir) {
+        return new BufferStorage(MAPPED_NAME) {
+            @Override
+            ByteBuffer allocateBytes(long numBytes) {
+                try {
+                    final File file = File.createTempFile("l1csyn-", ".buffer", scratchDir);
+                    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                        randomAccessFile.setLength(numBytes);
+                        // the mapping stays valid after the channel is closed
+                        return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, numBytes);
+                    } finally {
+                        if (!file.delete()) {
+                            // mapped files cannot be deleted on all platforms
+                            file.deleteOnExit();
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not create scratch file in " + scratchDir, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * @param name       one of {@link #HEAP_NAME}, {@link #DIRECT_NAME} or {@link #MAPPED_NAME}, ignoring case
+     * @param scratchDir the directory of the scratch files of memory-mapped buffers, the temporary directory if null
+     */
+    public static BufferStorage forName(String name, File scratchDir) {
+        if (HEAP_NAME.equalsIgnoreCase(name)) {
+            return HEAP;
+        } else if (DIRECT_NAME.equalsIgnoreCase(name)) {
+            return DIRECT;
+        } else if (MAPPED_NAME.equalsIgnoreCase(name)) {
+            return mapped(scratchDir != null ? scratchDir : new File(System.getProperty("java.io.tmpdir")));
+        }
+        throw new IllegalArgumentException("Unknown buffer storage " + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a buffer of the given length initialised with zeros
+     */
+    public IntBuffer allocateInts(int length) {
+        return allocateBytes(getNumBytes(length, Integer.BYTES)).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * @return a buffer of the given length initialised with zeros
+     */
+    public FloatBuffer allocateFloats(int length) {
+        return allocateBytes(getNumBytes(length, Float.BYTES)).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    abstract ByteBuffer allocateBytes(long numBytes);
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static long getNumBytes(int length, int bytesPerValue) {
+        final long numBytes = (long) length * bytesPerValue;
+        if (length < 0 || numBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Cannot allocate a buffer of %d values", length));
+        }
+        return numBytes;
+    }
+}
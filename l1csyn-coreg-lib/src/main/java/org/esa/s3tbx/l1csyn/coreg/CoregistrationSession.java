@@ -0,0 +1,469 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Provides the data of the MISR and SLSTR index files needed for the co-registration of one OLCI/SLSTR pair.
+ * <p>
+ * The SLSTR indices are read at most once per session, even if they are requested concurrently by the transforms
+ * of several band types. The MISR variables on the OLCI instrument grid are not held in memory. They are streamed
+ * in chunks of lines along N_LINE_OLC, so the memory needed for reading them does not depend on the length of the
+ * product. Data derived from them can be shared by means of {@link #get(String, Callable)} until it is
+ * {@link #release(String) released}.
+ * <p>
+ * Reading is cancelled by interrupting the reading thread. The interruption is checked before each chunk, an
+ * {@link InterruptedIOException} is thrown then.
+ * <p>
+ * The cameras of the instrument grid can be read concurrently by {@link #forEachCamera(CameraTask)}. Each camera
+ * task opens its own files, as NetCDF files must not be read by several threads.
+ */
+public class CoregistrationSession {
+
+    public static final int DEFAULT_CHUNK_LINES = 2048;
+
+    private final String misrPath;
+    private final String slstrPath;
+    private final int chunkLines;
+    private final BufferStorage storage;
+    private final int cameraThreads;
+    private final ConcurrentHashMap<String, FutureTask<Object>> loaded;
+
+    public CoregistrationSession(File misrManifest, File slstrDir) {
+        this(misrManifest, slstrDir, DEFAULT_CHUNK_LINES);
+    }
+
+    /**
+     * @param chunkLines the number of lines along N_LINE_OLC which are read at once from the MISR files
+     */
+    public CoregistrationSession(File misrManifest, File slstrDir, int chunkLines) {
+        this(misrManifest, slstrDir, chunkLines, BufferStorage.HEAP);
+    }
+
+    /**
+     * @param chunkLines the number of lines along N_LINE_OLC which are read at once from the MISR files
+     * @param storage    allocates the correspondence indices created in this session
+     */
+    public CoregistrationSession(File misrManifest, File slstrDir, int chunkLines, BufferStorage storage) {
+        this(misrManifest, slstrDir, chunkLines, storage, 1);
+    }
+
+    /**
+     * @param chunkLines    the number of lines along N_LINE_OLC which are read at once from the MISR files
+     * @param storage       allocates the correspondence indices created in this session
+     * @param cameraThreads the number of cameras which are read concurrently when a map is derived, 1 reads them
+     *                      one after the other
+     */
+    public CoregistrationSession(File misrManifest, File slstrDir, int chunkLines, BufferStorage storage, int cameraThreads) {
+        if (chunkLines < 1) {
+            throw new IllegalArgumentException("The number of chunk lines must be positive.");
+        }
+        if (cameraThreads < 1) {
+            throw new IllegalArgumentException("The number of camera threads must be positive.");
+        }
+        this.misrPath = misrManifest.getParent();
+        this.slstrPath = slstrDir.getPath();
+        this.chunkLines = chunkLines;
+        this.storage = storage;
+        this.cameraThreads = cameraThreads;
+        this.loaded = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @return the storage allocating the correspondence indices
+     */
+    public BufferStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return the number of cameras which are read concurrently
+     */
+    public int getCameraThreads() {
+        return cameraThreads;
+    }
+
+    /**
+     * @param viewType the SLSTR view, either 'an' or 'ao'
+     * @return the scan, pixel and detector indices of the SLSTR image grid
+     */
+    SlstrIndices getSlstrIndices(String viewType) throws IOException {
+        return get("slstr_" + viewType, () -> readSlstrIndices(viewType, ""));
+    }
+
+    /**
+     * @param viewType the SLSTR view, either 'an' or 'ao'
+     * @return the scan, pixel and detector indices of the SLSTR orphan pixels
+     */
+    SlstrIndices getSlstrOrphanIndices(String viewType) throws IOException {
+        return get("slstr_orphan_" + viewType, () -> readSlstrIndices(viewType, "orphan_"));
+    }
+
+    /**
+     * @return the dimensions of the OLCI instrument grid
+     */
+    InstrumentGridShape getInstrumentGridShape() throws IOException {
+        return get("Oa17_shape", () -> {
+            try (NetcdfFile netcdfFile = NetcdfFiles.open(getOlciFilePath())) {
+                return InstrumentGridShape.of(netcdfFile);
+            }
+        });
+    }
+
+    /**
+     * Streams the MISR correspondence of the given band type together with the OLCI image positions of Oa17 in
+     * chunks along N_LINE_OLC. The values passed to the consumer are, in this order:
+     * <ol>
+     * <li>the MISR column (or the orphan index if {@code orphans} is set)</li>
+     * <li>the MISR row</li>
+     * <li>the OLCI image row</li>
+     * <li>the OLCI image column</li>
+     * </ol>
+     */
+    void readMisrCorrespondence(String bandType, boolean orphans, InstrumentChunkConsumer consumer) throws IOException {
+        readMisrCorrespondence(bandType, orphans, 0, Integer.MAX_VALUE, true, consumer);
+    }
+
+    /**
+     * Streams the MISR correspondence of one camera, see {@link #readMisrCorrespondence(String, boolean, InstrumentChunkConsumer)}.
+     */
+    void readMisrCorrespondence(String bandType, boolean orphans, int cam, InstrumentChunkConsumer consumer) throws IOException {
+        readMisrCorrespondence(bandType, orphans, cam, cam + 1, true, consumer);
+    }
+
+    /**
+     * Streams the MISR columns (or orphan indices) and rows of one camera only, without the OLCI image positions.
+     */
+    void readMisrKeys(String bandType, boolean orphans, int cam, InstrumentChunkConsumer consumer) throws IOException {
+        readMisrCorrespondence(bandType, orphans, cam, cam + 1, false, consumer);
+    }
+
+    /**
+     * Runs the task once for each camera of the instrument grid. If more than one camera thread is configured, the
+     * cameras are run concurrently and this method returns when all of them are done. If a task fails or the
+     * calling thread is interrupted, the remaining tasks are cancelled.
+     */
+    void forEachCamera(CameraTask task) throws IOException {
+        final int numCams = getInstrumentGridShape().numCams;
+        final int numThreads = Math.min(cameraThreads, numCams);
+        if (numThreads <= 1) {
+            for (int cam = 0; cam < numCams; cam++) {
+                task.run(cam);
+            }
+            return;
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "MISR cameras");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            final List<Future<Object>> futures = new ArrayList<>(numCams);
+            for (int cam = 0; cam < numCams; cam++) {
+                final int camIndex = cam;
+                futures.add(executor.submit(() -> {
+                    task.run(camIndex);
+                    return null;
+                }));
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Co-registration has been cancelled");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not read camera", cause);
+        } finally {
+            // interrupts the tasks which are still running after a failure or a cancellation
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the value stored under the given key. If there is none, it is created by the loader. Concurrent
+     * requests for the same key wait for the value created by the first one.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(String key, Callable<T> loader) throws IOException {
+        FutureTask<Object> task = new FutureTask<>((Callable<Object>) loader);
+        final FutureTask<Object> existing = loaded.putIfAbsent(key, task);
+        if (existing == null) {
+            task.run();
+        } else {
+            task = existing;
+        }
+        try {
+            return (T) task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + key, e);
+        } catch (ExecutionException e) {
+            loaded.remove(key, task);
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not read " + key, cause);
+        }
+    }
+
+    /**
+     * Releases the data of the given band type, which has been stored with a key starting with the band type
+     * followed by an underscore. Should be called when all maps of this band type are created.
+     */
+    public void release(String bandType) {
+        loaded.keySet().removeIf(key -> key.startsWith(bandType + "_"));
+    }
+
+    private String getOlciFilePath() {
+        return misrPath + "/misreg_Oref_Oa17.nc";
+    }
+
+    private SlstrIndices readSlstrIndices(String viewType, String prefix) throws IOException {
+        final String indexFilePath = slstrPath + "/indices_" + viewType + ".nc";
+        try (NetcdfFile netcdfFile = NetcdfFiles.open(indexFilePath)) {
+            final Array scanArray = findVariable(netcdfFile, "scan_" + prefix + viewType).read();
+            final Array pixelArray = findVariable(netcdfFile, "pixel_" + prefix + viewType).read();
+            final Array detectorArray = findVariable(netcdfFile, "detector_" + prefix + viewType).read();
+            final int[] shape = scanArray.getShape();
+            return new SlstrIndices(shape[1], shape[0],
+                                    (short[]) scanArray.get1DJavaArray(scanArray.getDataType()),
+                                    (short[]) pixelArray.get1DJavaArray(pixelArray.getDataType()),
+                                    (byte[]) detectorArray.get1DJavaArray(detectorArray.getDataType()));
+        }
+    }
+
+    private void readMisrCorrespondence(String bandType, boolean orphans, int firstCam, int endCam,
+                                        boolean withOlciPositions, InstrumentChunkConsumer consumer) throws IOException {
+        try (NetcdfFile bandFile = NetcdfFiles.open(misrPath + "/misregist_Oref_" + bandType + ".nc");
+             NetcdfFile olciFile = NetcdfFiles.open(getOlciFilePath())) {
+            final InstrumentGridShape shape = InstrumentGridShape.of(olciFile);
+            final InstrumentGridShape bandShape = InstrumentGridShape.of(bandFile);
+            // the instrument grid positions of the band and of Oa17 are combined, so both must have the same dimensions
+            if (!shape.equals(bandShape)) {
+                throw new IOException(String.format("Instrument grid of band %s %s differs from the one of Oa17 %s", bandType, bandShape, shape));
+            }
+            final GridVariable keys0 = orphans ? getMisrOrphanVariable(bandFile) : getMisrColVariable(bandFile, bandType);
+            final GridVariable keys1 = GridVariable.scaled(findVariableByPattern(bandFile, "row_corresp_\\S+"));
+            final int lastCam = Math.min(endCam, shape.numCams);
+            if (withOlciPositions) {
+                final GridVariable olciRows = GridVariable.unscaled(findVariable(olciFile, "L1b_row_17", "delta_row_17"));
+                final GridVariable olciCols = GridVariable.unscaled(findVariable(olciFile, "L1b_col_17", "delta_col_17"));
+                readChunks(shape, firstCam, lastCam, consumer, keys0, keys1, olciRows, olciCols);
+            } else {
+                readChunks(shape, firstCam, lastCam, consumer, keys0, keys1);
+            }
+        }
+    }
+
+    private static GridVariable getMisrColVariable(NetcdfFile bandFile, String bandType) throws IOException {
+        if (bandType.matches("S.") || bandType.matches(".o")) {
+            return GridVariable.scaled(findVariableByPattern(bandFile, "col_corresp_\\S+"));
+        } else {
+            // Not used as of 09.02.2021
+            return GridVariable.unscaled(findVariableByPattern(bandFile, "L1b_orphan_\\S+"));
+        }
+    }
+
+    private static GridVariable getMisrOrphanVariable(NetcdfFile bandFile) throws IOException {
+        return GridVariable.unscaled(findVariableByPattern(bandFile, "L1b_orphan_.._a.|orphan_corresp_s._a.|L1b_orphan_a."));
+    }
+
+    private void readChunks(InstrumentGridShape shape, int firstCam, int endCam, InstrumentChunkConsumer consumer,
+                            GridVariable... variables) throws IOException {
+        final int blockLines = Math.max(1, Math.min(shape.numLines, chunkLines));
+        final int[][] values = new int[variables.length][blockLines * shape.numDetectors];
+        try {
+            for (int cam = firstCam; cam < endCam; cam++) {
+                for (int line = 0; line < shape.numLines; line += blockLines) {
+                    checkInterrupted();
+                    final int lines = Math.min(blockLines, shape.numLines - line);
+                    final int length = lines * shape.numDetectors;
+                    for (int v = 0; v < variables.length; v++) {
+                        final Array block = variables[v].variable.read(new int[]{cam, line, 0}, new int[]{1, lines, shape.numDetectors});
+                        variables[v].decode(block, values[v], length);
+                    }
+                    consumer.accept((cam * shape.numLines + line) * shape.numDetectors, length, values);
+                }
+            }
+        } catch (InvalidRangeException e) {
+            throw new IOException("Could not read chunk of instrument grid", e);
+        }
+    }
+
+    /**
+     * @throws InterruptedIOException if the current thread has been interrupted, the interrupted status is kept
+     */
+    static void checkInterrupted() throws InterruptedIOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Co-registration has been cancelled");
+        }
+    }
+
+    private static Variable findVariable(NetcdfFile netcdfFile, String name, String alternativeName) throws IOException {
+        final Variable variable = netcdfFile.findVariable(name);
+        if (variable == null) {
+            return findVariable(netcdfFile, alternativeName);
+        }
+        return variable;
+    }
+
+    private static Variable findVariable(NetcdfFile netcdfFile, String name) throws IOException {
+        final Variable variable = netcdfFile.findVariable(name);
+        if (variable == null) {
+            throw new IOException(String.format("Variable '%s' not found in '%s'", name, netcdfFile.getLocation()));
+        }
+        return variable;
+    }
+
+    private static Variable findVariableByPattern(NetcdfFile netcdfFile, String pattern) throws IOException {
+        List<Variable> variables = netcdfFile.getVariables();
+        for (Variable variable : variables) {
+            if (variable.getFullName().matches(pattern)) {
+                return variable;
+            }
+        }
+        throw new IOException(String.format("No variable matching '%s' found in '%s'", pattern, netcdfFile.getLocation()));
+    }
+
+    /**
+     * Scan, pixel and detector indices of SLSTR image positions. The arrays are indexed by {@code y * width + x}.
+     */
+    static final class SlstrIndices {
+        final int width;
+        final int height;
+        final short[] scan;
+        final short[] pixel;
+        final byte[] detector;
+
+        SlstrIndices(int width, int height, short[] scan, short[] pixel, byte[] detector) {
+            this.width = width;
+            this.height = height;
+            this.scan = scan;
+            this.pixel = pixel;
+            this.detector = detector;
+        }
+    }
+
+    /**
+     * Dimensions of the OLCI instrument grid (N_CAM, N_LINE_OLC, N_DET_CAM).
+     */
+    static final class InstrumentGridShape {
+        final int numCams;
+        final int numLines;
+        final int numDetectors;
+
+        InstrumentGridShape(int numCams, int numLines, int numDetectors) {
+            this.numCams = numCams;
+            this.numLines = numLines;
+            this.numDetectors = numDetectors;
+        }
+
+        static InstrumentGridShape of(NetcdfFile netcdfFile) {
+            return new InstrumentGridShape(netcdfFile.findDimension("N_CAM").getLength(),
+                                           netcdfFile.findDimension("N_LINE_OLC").getLength(),
+                                           netcdfFile.findDimension("N_DET_CAM").getLength());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InstrumentGridShape)) {
+                return false;
+            }
+            final InstrumentGridShape that = (InstrumentGridShape) o;
+            return numCams == that.numCams && numLines == that.numLines && numDetectors == that.numDetectors;
+        }
+
+        @Override
+        public int hashCode() {
+            return (numCams * 31 + numLines) * 31 + numDetectors;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("(%d,%d,%d)", numCams, numLines, numDetectors);
+        }
+    }
+
+    /**
+     * Receives the values of MISR variables chunk by chunk.
+     */
+    interface InstrumentChunkConsumer {
+
+        /**
+         * @param firstIndex the instrument grid index {@code (cam * numLines + line) * numDetectors + detector} of
+         *                   the first value of the chunk
+         * @param length     the number of valid values in each array of the chunk
+         * @param values     the decoded values of each variable, the arrays are reused for the next chunk
+         */
+        void accept(int firstIndex, int length, int[][] values) throws IOException;
+    }
+
+    /**
+     * Work done for one camera of the instrument grid.
+     */
+    interface CameraTask {
+
+        void run(int cam) throws IOException;
+    }
+
+    private static final class GridVariable {
+        final Variable variable;
+        final double scale;
+        final int offset;
+
+        private GridVariable(Variable variable, double scale, int offset) {
+            this.variable = variable;
+            this.scale = scale;
+            this.offset = offset;
+        }
+
+        static GridVariable scaled(Variable variable) {
+            final int offset = variable.findAttribute("add_offset").getNumericValue().intValue();
+            final double scale = variable.findAttribute("scale_factor").getNumericValue().doubleValue();
+            return new GridVariable(variable, scale, offset);
+        }
+
+        static GridVariable unscaled(Variable variable) {
+            return new GridVariable(variable, 1.0, 0);
+        }
+
+        void decode(Array block, int[] values, int length) {
+            if (scale == 1.0 && offset == 0) {
+                for (int i = 0; i < length; i++) {
+                    values[i] = block.getInt(i);
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    // Type of variable of (row,col) might change with change of MISR format. Be careful here.
+                    values[i] = (int) Math.floor(block.getInt(i) * scale + offset);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import java.awt.Rectangle;
+import java.nio.IntBuffer;
+
+/**
+ * Immutable mapping from OLCI image positions (x,y) to SLSTR image positions (x,y).
+ * <p>
+ * The SLSTR coordinates are held in two int buffers which are indexed by {@code y * width + x} of the OLCI
+ * raster. Positions without a correspondence contain {@link #NO_CORRESPONDENCE}. The buffers are allocated by a
+ * {@link BufferStorage}, so they may reside outside of the Java heap. Instances are not modified after creation
+ * and can therefore be shared between the tile computing threads of GPF.
+ * <p>
+ * The number of correspondences is counted per block of {@value #BLOCK_SIZE} x {@value #BLOCK_SIZE} OLCI pixels
+ * when the index is created, so the {@link #getCoverage(Rectangle) coverage} of a tile is known without visiting
+ * its pixels, unless the tile only partly overlaps a partly covered block.
+ */
+public final class CorrespondenceIndex {
+
+    public static final int NO_CORRESPONDENCE = -1;
+
+    static final int BLOCK_SIZE = 32;
+
+    /**
+     * How much of an OLCI region has corresponding SLSTR positions.
+     */
+    public enum Coverage {
+        /**
+         * No position of the region has a correspondence.
+         */
+        EMPTY,
+        /**
+         * Some, but not all positions of the region have a correspondence.
+         */
+        PARTIAL,
+        /**
+         * All positions of the region have a correspondence.
+         */
+        FULL
+    }
+
+    private final int width;
+    private final int height;
+    private final IntBuffer slstrX;
+    private final IntBuffer slstrY;
+    private final int numBlocksX;
+    private final int[] blockCounts;
+    private final int size;
+
+    private CorrespondenceIndex(int width, int height, IntBuffer slstrX, IntBuffer slstrY) {
+        this.width = width;
+        this.height = height;
+        this.slstrX = slstrX;
+        this.slstrY = slstrY;
+        this.numBlocksX = (width + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.blockCounts = new int[numBlocksX * ((height + BLOCK_SIZE - 1) / BLOCK_SIZE)];
+        int size = 0;
+        for (int y = 0; y < height; y++) {
+            final int lineOffset = y * width;
+            final int blockLineOffset = y / BLOCK_SIZE * numBlocksX;
+            for (int x = 0; x < width; x++) {
+                if (slstrX.get(lineOffset + x) != NO_CORRESPONDENCE) {
+                    blockCounts[blockLineOffset + x / BLOCK_SIZE]++;
+                    size++;
+                }
+            }
+        }
+        this.size = size;
+    }
+
+    /**
+     * Creates an index directly from its arrays. The arrays are taken over and must not be modified afterwards.
+     */
+    static CorrespondenceIndex wrap(int width, int height, int[] slstrX, int[] slstrY) {
+        return wrap(width, height, IntBuffer.wrap(slstrX), IntBuffer.wrap(slstrY));
+    }
+
+    /**
+     * Creates an index directly from its buffers. The buffers are taken over and must not be modified afterwards.
+     */
+    static CorrespondenceIndex wrap(int width, int height, IntBuffer slstrX, IntBuffer slstrY) {
+        if (slstrX.capacity() != width * height || slstrY.capacity() != width * height) {
+            throw new IllegalArgumentException("The length of the arrays must be width * height.");
+        }
+        return new CorrespondenceIndex(width, height, slstrX, slstrY);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the number of OLCI positions which have a corresponding SLSTR position
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int x, int y) {
+        return getSlstrX(x, y) != NO_CORRESPONDENCE;
+    }
+
+    /**
+     * @return the SLSTR x position for the given OLCI position or {@link #NO_CORRESPONDENCE}
+     */
+    public int getSlstrX(int x, int y) {
+        if (insideBounds(x, y)) {
+            return slstrX.get(y * width + x);
+        }
+        return NO_CORRESPONDENCE;
+    }
+
+    /**
+     * @return the SLSTR y position for the given OLCI position or {@link #NO_CORRESPONDENCE}
+     */
+    public int getSlstrY(int x, int y) {
+        if (insideBounds(x, y)) {
+            return slstrY.get(y * width + x);
+        }
+        return NO_CORRESPONDENCE;
+    }
+
+    /**
+     * Computes the bounding rectangle of the SLSTR positions which correspond to the given OLCI region.
+     *
+     * @param olciRegion the region of the OLCI raster, may exceed the raster bounds
+     * @return the bounding rectangle in SLSTR image coordinates, empty if the region has no correspondences
+     */
+    public Rectangle getSlstrBounds(Rectangle olciRegion) {
+        final Rectangle region = olciRegion.intersection(new Rectangle(0, 0, width, height));
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (int y = region.y; y < region.y + region.height; y++) {
+            final int lineOffset = y * width;
+            for (int x = region.x; x < region.x + region.width; x++) {
+                final int posX = slstrX.get(lineOffset + x);
+                if (posX != NO_CORRESPONDENCE) {
+                    final int posY = slstrY.get(lineOffset + x);
+                    minX = Math.min(minX, posX);
+                    maxX = Math.max(maxX, posX);
+                    minY = Math.min(minY, posY);
+                    maxY = Math.max(maxY, posY);
+                }
+            }
+        }
+        if (minX > maxX) {
+            return new Rectangle();
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * @param olciRegion the region of the OLCI raster, positions outside of the raster have no correspondence
+     * @return whether none, some or all positions of the region have a correspondence, {@link Coverage#EMPTY} for
+     * an empty region
+     */
+    public Coverage getCoverage(Rectangle olciRegion) {
+        final Rectangle region = olciRegion.intersection(new Rectangle(0, 0, width, height));
+        if (region.isEmpty()) {
+            return Coverage.EMPTY;
+        }
+        long count = 0;
+        for (int blockY = region.y / BLOCK_SIZE; blockY * BLOCK_SIZE < region.y + region.height; blockY++) {
+            for (int blockX = region.x / BLOCK_SIZE; blockX * BLOCK_SIZE < region.x + region.width; blockX++) {
+                final int blockCount = blockCounts[blockY * numBlocksX + blockX];
+                if (blockCount == 0) {
+                    continue;
+                }
+                final Rectangle block = new Rectangle(blockX * BLOCK_SIZE, blockY * BLOCK_SIZE, BLOCK_SIZE, BLOCK_SIZE)
+                        .intersection(new Rectangle(0, 0, width, height));
+                final Rectangle overlap = block.intersection(region);
+                if (overlap.equals(block)) {
+                    count += blockCount;
+                } else if (blockCount == block.width * block.height) {
+                    count += overlap.width * overlap.height;
+                } else {
+                    count += countCorrespondences(overlap);
+                }
+            }
+        }
+        if (count == 0) {
+            return Coverage.EMPTY;
+        }
+        return count == (long) olciRegion.width * olciRegion.height ? Coverage.FULL : Coverage.PARTIAL;
+    }
+
+    private int countCorrespondences(Rectangle region) {
+        int count = 0;
+        for (int y = region.y; y < region.y + region.height; y++) {
+            final int lineOffset = y * width;
+            for (int x = region.x; x < region.x + region.width; x++) {
+                if (slstrX.get(lineOffset + x) != NO_CORRESPONDENCE) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean insideBounds(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    /**
+     * Collects the correspondences of an index. If the same OLCI position is put several times, the last put
+     * SLSTR position is kept.
+     */
+    public static class Builder {
+
+        private final int width;
+        private final int height;
+        private IntBuffer slstrX;
+        private IntBuffer slstrY;
+
+        public Builder(int width, int height) {
+            this(width, height, BufferStorage.HEAP);
+        }
+
+        /**
+         * @param storage allocates the buffers of the index
+         */
+        public Builder(int width, int height, BufferStorage storage) {
+            if (width < 0 || height < 0) {
+                throw new IllegalArgumentException("Width and height must not be negative.");
+            }
+            this.width = width;
+            this.height = height;
+            slstrX = storage.allocateInts(width * height);
+            slstrY = storage.allocateInts(width * height);
+            for (int i = 0; i < width * height; i++) {
+                slstrX.put(i, NO_CORRESPONDENCE);
+                slstrY.put(i, NO_CORRESPONDENCE);
+            }
+        }
+
+        public Builder put(int olciX, int olciY, int slstrPosX, int slstrPosY) {
+            if (slstrX == null) {
+                throw new IllegalStateException("Index has already been built.");
+            }
+            if (olciX < 0 || olciY < 0 || olciX >= width || olciY >= height) {
+                throw new IllegalArgumentException(String.format("OLCI position (%d,%d) is outside of %dx%d raster",
+                                                                 olciX, olciY, width, height));
+            }
+            if (slstrPosX < 0 || slstrPosY < 0) {
+                throw new IllegalArgumentException(String.format("Invalid SLSTR position (%d,%d)", slstrPosX, slstrPosY));
+            }
+            final int index = olciY * width + olciX;
+            slstrX.put(index, slstrPosX);
+            slstrY.put(index, slstrPosY);
+            return this;
+        }
+
+        /**
+         * Creates the index. The builder must not be used afterwards.
+         */
+        public CorrespondenceIndex build() {
+            if (slstrX == null) {
+                throw new IllegalStateException("Index has already been built.");
+            }
+            final CorrespondenceIndex index = new CorrespondenceIndex(width, height, slstrX, slstrY);
+            slstrX = null;
+            slstrY = null;
+            return index;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import java.awt.Rectangle;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent cache of {@link CorrespondenceIndex correspondence indices} on disk.
+ * <p>
+ * The indices are stored in a sub-directory of the cache directory which is named by a key derived from the
+ * input products. Each index is written into its own file in a compact binary format. SLSTR positions are
+ * stored as 16 bit values if they fit, otherwise as 32 bit values. Files are read back by memory mapping.
+ */
+public class CorrespondenceIndexCache {
+
+    private static final int MAGIC = 0x4C314349; // 'L1CI'
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 5 * Integer.BYTES;
+    private static final String FILE_EXTENSION = ".idx";
+    private static final Logger LOG = Logger.getLogger(CorrespondenceIndexCache.class.getName());
+
+    private final File keyDir;
+
+    public CorrespondenceIndexCache(File cacheDir, String key) {
+        this.keyDir = new File(cacheDir, key);
+    }
+
+    /**
+     * Creates the cache key for the given inputs. The key is a digest of the MISR manifest, the SLSTR index files
+     * of the nadir and oblique view and the dimension of the OLCI raster.
+     *
+     * @param misrManifest the xfdumanifest.xml of the MISR product
+     * @param slstrDir     the directory of the SLSTR product containing the indices_an.nc and indices_ao.nc files
+     * @param olciWidth    the width of the OLCI raster
+     * @param olciHeight   the height of the OLCI raster
+     * @return the key as hexadecimal string
+     */
+    public static String createKey(File misrManifest, File slstrDir, int olciWidth, int olciHeight) throws IOException {
+        return createKey(misrManifest, slstrDir, olciWidth, olciHeight, null);
+    }
+
+    /**
+     * Creates the cache key for indices which are built for a region of the OLCI raster.
+     *
+     * @param olciRegion the region of the OLCI raster or {@code null} for the whole raster
+     * @see #createKey(File, File, int, int)
+     */
+    public static String createKey(File misrManifest, File slstrDir, int olciWidth, int olciHeight,
+                                   Rectangle olciRegion) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+        updateDigest(digest, misrManifest);
+        updateDigest(digest, new File(slstrDir, "indices_an.nc"));
+        updateDigest(digest, new File(slstrDir, "indices_ao.nc"));
+        digest.update(ByteBuffer.allocate(3 * Integer.BYTES).putInt(FORMAT_VERSION).putInt(olciWidth).putInt(olciHeight).array());
+        if (olciRegion != null) {
+            digest.update(ByteBuffer.allocate(4 * Integer.BYTES).putInt(olciRegion.x).putInt(olciRegion.y)
+                                  .putInt(olciRegion.width).putInt(olciRegion.height).array());
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    private static void updateDigest(MessageDigest digest, File file) throws IOException {
+        final byte[] buffer = new byte[64 * 1024];
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Loads the index with the given name.
+     *
+     * @return the index or {@code null} if it is not cached or could not be read
+     */
+    public CorrespondenceIndex load(String name) {
+        return load(name, BufferStorage.HEAP);
+    }
+
+    /**
+     * Loads the index with the given name into buffers allocated by the given storage.
+     *
+     * @return the index or {@code null} if it is not cached or could not be read
+     */
+    public CorrespondenceIndex load(String name, BufferStorage storage) {
+        final File file = getFile(name);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                LOG.log(Level.WARNING, String.format("Ignoring invalid cache file %s", file));
+                return null;
+            }
+            final int width = buffer.getInt();
+            final int height = buffer.getInt();
+            final int bytesPerValue = buffer.getInt();
+            final int numValues = width * height;
+            if (buffer.remaining() != 2L * numValues * bytesPerValue) {
+                LOG.log(Level.WARNING, String.format("Ignoring truncated cache file %s", file));
+                return null;
+            }
+            final IntBuffer slstrX = storage.allocateInts(numValues);
+            final IntBuffer slstrY = storage.allocateInts(numValues);
+            if (bytesPerValue == Short.BYTES) {
+                final ShortBuffer values = buffer.asShortBuffer();
+                for (int i = 0; i < numValues; i++) {
+                    slstrX.put(i, values.get(i));
+                    slstrY.put(i, values.get(numValues + i));
+                }
+            } else {
+                final IntBuffer values = buffer.asIntBuffer();
+                values.limit(numValues);
+                slstrX.put(values);
+                values.limit(2 * numValues).position(numValues);
+                slstrY.put(values);
+                slstrX.clear();
+                slstrY.clear();
+            }
+            return CorrespondenceIndex.wrap(width, height, slstrX, slstrY);
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, String.format("Could not read cache file %s: %s", file, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Stores the index under the given name. The file is written to a temporary location first and then moved,
+     * so concurrent readers never see a partially written file.
+     */
+    public void store(String name, CorrespondenceIndex index) throws IOException {
+        Files.createDirectories(keyDir.toPath());
+        final int width = index.getWidth();
+        final int height = index.getHeight();
+        final int bytesPerValue = fitsIntoShort(index) ? Short.BYTES : Integer.BYTES;
+
+        final Path tempFile = Files.createTempFile(keyDir.toPath(), name, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 256 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(width);
+                out.writeInt(height);
+                out.writeInt(bytesPerValue);
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        writeValue(out, index.getSlstrX(x, y), bytesPerValue);
+                    }
+                }
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        writeValue(out, index.getSlstrY(x, y), bytesPerValue);
+                    }
+                }
+            }
+            Files.move(tempFile, getFile(name).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private File getFile(String name) {
+        return new File(keyDir, name + FILE_EXTENSION);
+    }
+
+    private static void writeValue(DataOutputStream out, int value, int bytesPerValue) throws IOException {
+        if (bytesPerValue == Short.BYTES) {
+            out.writeShort(value);
+        } else {
+            out.writeInt(value);
+        }
+    }
+
+    private static boolean fitsIntoShort(CorrespondenceIndex index) {
+        for (int y = 0; y < index.getHeight(); y++) {
+            for (int x = 0; x < index.getWidth(); x++) {
+                if (index.getSlstrX(x, y) > Short.MAX_VALUE || index.getSlstrY(x, y) > Short.MAX_VALUE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
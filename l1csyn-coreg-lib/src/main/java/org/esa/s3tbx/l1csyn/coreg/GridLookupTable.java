@@ -0,0 +1,118 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import java.util.Arrays;
+
+/**
+ * Dense table which maps a position on a bounded two or three dimensional integer grid to an int value.
+ * <p>
+ * The values are held in one flat array, so a lookup is a bounds check and an array access. Positions
+ * outside of the grid and positions which have not been set return {@link #NO_VALUE}.
+ */
+final class GridLookupTable {
+
+    static final int NO_VALUE = -1;
+
+    private final int origin0;
+    private final int origin1;
+    private final int origin2;
+    private final int size0;
+    private final int size1;
+    private final int size2;
+    private final int[] values;
+
+    private GridLookupTable(int origin0, int origin1, int origin2, int size0, int size1, int size2) {
+        final long numCells = (long) size0 * size1 * size2;
+        if (size0 < 0 || size1 < 0 || size2 < 0 || numCells > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("Invalid table size %d x %d x %d", size0, size1, size2));
+        }
+        this.origin0 = origin0;
+        this.origin1 = origin1;
+        this.origin2 = origin2;
+        this.size0 = size0;
+        this.size1 = size1;
+        this.size2 = size2;
+        this.values = new int[(int) numCells];
+        Arrays.fill(values, NO_VALUE);
+    }
+
+    /**
+     * Creates a table for positions (i,j) with {@code min0 <= i <= max0} and {@code min1 <= j <= max1}.
+     */
+    static GridLookupTable create2D(int min0, int max0, int min1, int max1) {
+        return new GridLookupTable(min0, min1, 0, max0 - min0 + 1, max1 - min1 + 1, 1);
+    }
+
+    /**
+     * Creates a table for positions (i,j,k) with {@code 0 <= i < size0}, {@code 0 <= j < size1} and
+     * {@code 0 <= k < size2}.
+     */
+    static GridLookupTable create3D(int size0, int size1, int size2) {
+        return new GridLookupTable(0, 0, 0, size0, size1, size2);
+    }
+
+    boolean contains(int i, int j) {
+        return indexOf(i, j, origin2) >= 0;
+    }
+
+    int get(int i, int j) {
+        return get(i, j, origin2);
+    }
+
+    int get(int i, int j, int k) {
+        final int index = indexOf(i, j, k);
+        return index < 0 ? NO_VALUE : values[index];
+    }
+
+    /**
+     * @return the value at the given flat index as computed by {@link #indexOf(int, int, int)}
+     */
+    int getAt(int index) {
+        return values[index];
+    }
+
+    /**
+     * Sets the value at the given flat index as computed by {@link #indexOf(int, int, int)}.
+     */
+    void putAt(int index, int value) {
+        values[index] = value;
+    }
+
+    void put(int i, int j, int value) {
+        put(i, j, origin2, value);
+    }
+
+    void put(int i, int j, int k, int value) {
+        final int index = indexOf(i, j, k);
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format("Position (%d,%d,%d) is outside of the table", i, j, k));
+        }
+        values[index] = value;
+    }
+
+    /**
+     * @return the number of cells of the table
+     */
+    int size() {
+        return values.length;
+    }
+
+    /**
+     * @return the flat index of the given position or -1 if it is outside of the table
+     */
+    int indexOf(int i, int j) {
+        return indexOf(i, j, origin2);
+    }
+
+    /**
+     * @return the flat index of the given position or -1 if it is outside of the table
+     */
+    int indexOf(int i, int j, int k) {
+        final int i0 = i - origin0;
+        final int i1 = j - origin1;
+        final int i2 = k - origin2;
+        if (i0 < 0 || i1 < 0 || i2 < 0 || i0 >= size0 || i1 >= size1 || i2 >= size2) {
+            return -1;
+        }
+        return (i0 * size1 + i1) * size2 + i2;
+    }
+}
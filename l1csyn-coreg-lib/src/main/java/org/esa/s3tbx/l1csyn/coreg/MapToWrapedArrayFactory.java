@@ -1,6 +1,7 @@
-package org.esa.s3tbx.l1csyn.op;
+package org.esa.s3tbx.l1csyn.coreg;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -43,98 +44,88 @@ public class MapToWrapedArrayFactory {
 
     public static class WrappedArray2 extends AbstractWrappedArray {
 
-        private final int[][][] array;
-
         public WrappedArray2(Map<int[], int[]> map, int[] keyMins, int[] keyMaxs) {
-            super(keyMins, 2);
-            if (map == null) {
-                throw new IllegalArgumentException("Map must be not null.");
-            }
-            if (keyMins.length != 2 || keyMaxs.length != 2) {
-                throw new IllegalArgumentException("The key min and max arrays must have a length of 2.");
-            }
-            int[] dimensions = new int[2];
-            for (int i = 0; i < dimensions.length; i++) {
-                int maxIdx = keyMaxs[i] - keyMins[i];
-                maxIndex[i] = maxIdx;
-                dimensions[i] = maxIdx + 1;
-            }
-            array = new int[dimensions[0]][dimensions[1]][];
-            copyMapValues(map);
+            super(map, keyMins, keyMaxs, 2);
         }
 
-        private void copyMapValues(Map<int[], int[]> map) {
-            for (Map.Entry<int[], int[]> entry : map.entrySet()) {
-                int[] key = entry.getKey();
-                array[key[0] - offsets[0]][key[1] - offsets[1]] = entry.getValue();
-            }
+        @Override
+        protected int cellIndex(int[] keyArr) {
+            return (keyArr[0] - offsets[0]) * dimensions[1] + (keyArr[1] - offsets[1]);
         }
+    }
 
-        @Override
-        public boolean containsKey(Object key) {
-            if (key instanceof int[]) {
-                int[] keyArr = (int[]) key;
-                if (keyArr.length == 2) {
-                    if (insideArrayBounds(keyArr)) {
-                        return array[keyArr[0] - offsets[0]][keyArr[1] - offsets[1]] != null;
-                    }
-                }
-            }
-            return false;
+    public static class WrappedArray3 extends AbstractWrappedArray {
+
+        public WrappedArray3(Map<int[], int[]> map, int[] keyMins, int[] keyMaxs) {
+            super(map, keyMins, keyMaxs, 3);
         }
 
         @Override
-        public int[] get(Object key) {
-            if (key instanceof int[]) {
-                int[] keyArr = (int[]) key;
-                if (keyArr.length == 2) {
-                    if (insideArrayBounds(keyArr)) {
-                        return array[keyArr[0] - offsets[0]][keyArr[1] - offsets[1]];
-                    }
-                }
-            }
-            return null;
+        protected int cellIndex(int[] keyArr) {
+            return ((keyArr[0] - offsets[0]) * dimensions[1] + (keyArr[1] - offsets[1])) * dimensions[2] + (keyArr[2] - offsets[2]);
         }
-
     }
 
-    public static class WrappedArray3 extends AbstractWrappedArray {
-
-        private final int[][][][] array;
+    /**
+     * Holds the values of all cells in one flat primitive array. All values of the map must have the same length.
+     */
+    public static abstract class AbstractWrappedArray implements Map<int[], int[]> {
+        protected final int[] offsets;
+        protected final int[] maxIndex;
+        protected final int[] dimensions;
+        private final int valueLength;
+        private final int[] values;
+        private final BitSet occupied;
 
-        public WrappedArray3(Map<int[], int[]> map, int[] keyMins, int[] keyMaxs) {
-            super(keyMins, 3);
+        public AbstractWrappedArray(Map<int[], int[]> map, int[] keyMins, int[] keyMaxs, int size) {
             if (map == null) {
                 throw new IllegalArgumentException("Map must be not null.");
             }
-            if (keyMins.length != 3 || keyMaxs.length != 3) {
-                throw new IllegalArgumentException("The key min and max arrays must have a length of 2.");
+            if (keyMins.length != size || keyMaxs.length != size) {
+                throw new IllegalArgumentException("The key min and max arrays must have a length of " + size + ".");
             }
-            int[] dimensions = new int[3];
-            for (int i = 0; i < dimensions.length; i++) {
+            offsets = keyMins;
+            maxIndex = new int[size];
+            dimensions = new int[size];
+            long numCells = 1;
+            for (int i = 0; i < size; i++) {
                 int maxIdx = keyMaxs[i] - keyMins[i];
                 maxIndex[i] = maxIdx;
                 dimensions[i] = maxIdx + 1;
+                numCells *= dimensions[i];
             }
-            array = new int[dimensions[0]][dimensions[1]][dimensions[2]][];
+            valueLength = map.isEmpty() ? 0 : map.values().iterator().next().length;
+            if (numCells * valueLength > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("The key range is too large to be wrapped into an array.");
+            }
+            values = new int[(int) numCells * valueLength];
+            occupied = new BitSet((int) numCells);
             copyMapValues(map);
         }
 
         private void copyMapValues(Map<int[], int[]> map) {
             for (Map.Entry<int[], int[]> entry : map.entrySet()) {
-                int[] key = entry.getKey();
-                array[key[0] - offsets[0]][key[1] - offsets[1]][key[2] - offsets[2]] = entry.getValue();
+                int[] value = entry.getValue();
+                if (value.length != valueLength) {
+                    throw new IllegalArgumentException("All values must have a length of " + valueLength + ".");
+                }
+                int cell = cellIndex(entry.getKey());
+                System.arraycopy(value, 0, values, cell * valueLength, valueLength);
+                occupied.set(cell);
             }
         }
 
+        /**
+         * @return the index of the cell of the given key. The key must be inside the array bounds.
+         */
+        protected abstract int cellIndex(int[] keyArr);
+
         @Override
         public boolean containsKey(Object key) {
             if (key instanceof int[]) {
                 int[] keyArr = (int[]) key;
-                if (keyArr.length == 3) {
-                    if (insideArrayBounds(keyArr)) {
-                        return array[keyArr[0] - offsets[0]][keyArr[1] - offsets[1]][keyArr[2] - offsets[2]] != null;
-                    }
+                if (keyArr.length == offsets.length && insideArrayBounds(keyArr)) {
+                    return occupied.get(cellIndex(keyArr));
                 }
             }
             return false;
@@ -144,24 +135,15 @@ public class MapToWrapedArrayFactory {
         public int[] get(Object key) {
             if (key instanceof int[]) {
                 int[] keyArr = (int[]) key;
-                if (keyArr.length == 3) {
-                    if (insideArrayBounds(keyArr)) {
-                        return array[keyArr[0] - offsets[0]][keyArr[1] - offsets[1]][keyArr[2] - offsets[2]];
+                if (keyArr.length == offsets.length && insideArrayBounds(keyArr)) {
+                    int cell = cellIndex(keyArr);
+                    if (occupied.get(cell)) {
+                        return Arrays.copyOfRange(values, cell * valueLength, (cell + 1) * valueLength);
                     }
                 }
             }
             return null;
         }
-    }
-
-    public static abstract class AbstractWrappedArray implements Map<int[], int[]> {
-        protected final int[] offsets;
-        protected final int[] maxIndex;
-
-        public AbstractWrappedArray(int[] keyMins, int size) {
-            offsets = keyMins;
-            maxIndex = new int[size];
-        }
 
         @Override
         public int size() {
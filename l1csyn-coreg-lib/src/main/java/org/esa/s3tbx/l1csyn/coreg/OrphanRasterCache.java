@@ -0,0 +1,172 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import ucar.ma2.Array;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Cache of the SLSTR orphan radiances read from the band NetCDF files.
+ * <p>
+ * Each orphan variable is read at most once while it is cached, even if it is requested concurrently by several
+ * tile computing threads. The scale factor is applied when reading. If the cached rasters exceed the memory
+ * budget, the least recently used ones are evicted and read again when they are requested the next time. The rasters
+ * are allocated by a {@link BufferStorage}, so the budget does not need to be taken from the Java heap.
+ */
+public class OrphanRasterCache {
+
+    private final long maxBytes;
+    private final BufferStorage storage;
+    private final LinkedHashMap<String, FutureTask<OrphanRaster>> entries;
+    private long usedBytes;
+
+    /**
+     * @param maxBytes the memory budget in bytes
+     */
+    public OrphanRasterCache(long maxBytes) {
+        this(maxBytes, BufferStorage.HEAP);
+    }
+
+    /**
+     * @param maxBytes the memory budget in bytes
+     * @param storage  allocates the cached rasters
+     */
+    public OrphanRasterCache(long maxBytes, BufferStorage storage) {
+        this.maxBytes = maxBytes;
+        this.storage = storage;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @param file         the NetCDF file of the SLSTR band
+     * @param variableName the name of the orphan variable
+     * @return the orphan raster or {@code null} if the file does not contain the variable
+     */
+    public OrphanRaster get(File file, String variableName) throws IOException {
+        final String key = file.getPath() + "#" + variableName;
+        FutureTask<OrphanRaster> task;
+        boolean load = false;
+        synchronized (this) {
+            task = entries.get(key);
+            if (task == null) {
+                task = new FutureTask<>(() -> readOrphanRaster(file, variableName));
+                entries.put(key, task);
+                load = true;
+            }
+        }
+        if (load) {
+            task.run();
+            account(key, task);
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + key, e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                entries.remove(key, task);
+            }
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Could not read " + key, cause);
+        }
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    private synchronized void account(String key, FutureTask<OrphanRaster> task) {
+        if (entries.get(key) != task) {
+            // cleared in the meantime
+            return;
+        }
+        usedBytes += getSizeInBytes(task);
+        final Iterator<Map.Entry<String, FutureTask<OrphanRaster>>> iterator = entries.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<String, FutureTask<OrphanRaster>> entry = iterator.next();
+            // the most recently loaded raster is kept, even if it exceeds the budget on its own
+            if (entry.getValue() != task && entry.getValue().isDone()) {
+                usedBytes -= getSizeInBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getSizeInBytes(FutureTask<OrphanRaster> task) {
+        try {
+            final OrphanRaster raster = task.get();
+            return raster == null ? 0 : (long) raster.data.capacity() * Float.BYTES;
+        } catch (InterruptedException | ExecutionException e) {
+            return 0;
+        }
+    }
+
+    private OrphanRaster readOrphanRaster(File file, String variableName) throws IOException {
+        try (NetcdfFile netcdf = NetcdfFiles.open(file.getPath())) {
+            final Variable orphanVariable = netcdf.findVariable(variableName);
+            if (orphanVariable == null) {
+                return null;
+            }
+            double scaleFactor = 1.0;
+            final Attribute scaleFactorAttribute = orphanVariable.findAttribute("scale_factor");
+            if (scaleFactorAttribute != null) {
+                final Number scaleFactorValue = scaleFactorAttribute.getNumericValue();
+                if (scaleFactorValue != null) {
+                    scaleFactor = scaleFactorValue.doubleValue();
+                }
+            }
+            final Array orphanData = orphanVariable.read();
+            final int[] shape = orphanData.getShape(); // Dimension is Y, X; shape is [2400, 374] for S3_radiance_orphan_an
+            final FloatBuffer data = storage.allocateFloats(shape[0] * shape[1]);
+            for (int i = 0; i < data.capacity(); i++) {
+                final double dataValue = orphanData.getDouble(i);
+                data.put(i, dataValue > 0 ? (float) (dataValue * scaleFactor) : Float.NaN);
+            }
+            return new OrphanRaster(shape[1], shape[0], data);
+        }
+    }
+
+    /**
+     * Scaled orphan radiances indexed by {@code y * width + x}. Orphans without a valid value are NaN.
+     */
+    public static final class OrphanRaster {
+        final int width;
+        final int height;
+        final FloatBuffer data;
+
+        OrphanRaster(int width, int height, FloatBuffer data) {
+            this.width = width;
+            this.height = height;
+            this.data = data;
+        }
+
+        /**
+         * @return the scaled value or NaN if the position is outside of the raster or has no valid value
+         */
+        public float getValue(int x, int y) {
+            if (x < 0 || y < 0 || x >= width || y >= height) {
+                return Float.NaN;
+            }
+            return data.get(y * width + x);
+        }
+    }
+}
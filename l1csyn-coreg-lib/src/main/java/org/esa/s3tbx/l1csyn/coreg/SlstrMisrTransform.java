@@ -0,0 +1,336 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * Computes the correspondence between the OLCI and the SLSTR image grid of a band type from a MISR product.
+ * <p>
+ * The transform only needs the raster sizes of the products, the files are read by the {@link CoregistrationSession}.
+ * {@link #computeCorrespondence} performs the same computation on arrays held in memory.
+ */
+public class SlstrMisrTransform implements Serializable {
+    private static final int SLSTR_OFFSET = 0;
+    private final CoregistrationSession session;
+    private final String bandType;
+    private final String viewtype;
+    private final Rectangle olciRegion;
+    private final int slstrWidth;
+    private final int slstrHeight;
+    private final transient StageTimer stageTimer;
+
+    /**
+     * @param olciWidth   the width of the OLCI image (Oa17)
+     * @param olciHeight  the height of the OLCI image
+     * @param slstrWidth  the width of the SLSTR image of the view of the band type, see {@link #getViewType(String)}
+     * @param slstrHeight the height of the SLSTR image of the view
+     */
+    public SlstrMisrTransform(CoregistrationSession session, String bandType, int olciWidth, int olciHeight,
+                              int slstrWidth, int slstrHeight) {
+        this(session, bandType, olciWidth, olciHeight, slstrWidth, slstrHeight, StageTimer.NONE);
+    }
+
+    /**
+     * @param stageTimer receives the runs of the steps
+     */
+    public SlstrMisrTransform(CoregistrationSession session, String bandType, int olciWidth, int olciHeight,
+                              int slstrWidth, int slstrHeight, StageTimer stageTimer) {
+        this(session, bandType, new Rectangle(olciWidth, olciHeight), slstrWidth, slstrHeight, stageTimer);
+    }
+
+    /**
+     * Creates a transform for a region of the OLCI image. The correspondence indices have the size of the region
+     * and are relative to its origin, SLSTR pixels which do not correspond to a pixel of the region are dropped
+     * while the indices are built.
+     *
+     * @param olciRegion the region of the OLCI image, must lie within the image
+     */
+    public SlstrMisrTransform(CoregistrationSession session, String bandType, Rectangle olciRegion,
+                              int slstrWidth, int slstrHeight, StageTimer stageTimer) {
+        this.session = session;
+        this.bandType = bandType;
+        this.olciRegion = new Rectangle(olciRegion);
+        this.slstrWidth = slstrWidth;
+        this.slstrHeight = slstrHeight;
+        this.stageTimer = stageTimer;
+        this.viewtype = getViewType(bandType);
+    }
+
+    /**
+     * @return the SLSTR view whose indices are used for the band type, "an" for the nadir bands S1 to S6 and "ao"
+     * otherwise
+     */
+    public static String getViewType(String bandType) {
+        return bandType.contains("S") ? "an" : "ao";
+    }
+
+    public static int[] getColRow(int scan, int pixel, int detector) {
+        return new int[]{getCol(scan, pixel, detector), getRow(scan, pixel, detector)};
+    }
+
+    //todo : clarify the formula
+    public static int getCol(int scan, int pixel, int detector) {
+        return pixel;
+    }
+
+    public static int getRow(int scan, int pixel, int detector) {
+        return scan * 4 + detector;
+    }
+
+    // Steps 3 and 4
+    private GridLookupTable getMisrOlciImageMap() throws IOException {
+        // provides mapping between MISR (col/row) and the OLCI region position (row * width + col). It combines
+        // the mapping of MISR to the OLCI instrument grid (N_CAM/N_LINE_OLC/N_DET_CAM) of the band with the mapping of
+        // the instrument grid to the image grid of Oa17, which are streamed together from the MISR product.
+        // Only the MISR positions which are looked up for the SLSTR pixels or orphans are kept, so the size of the
+        // table does not depend on the length of the MISR product. It is shared by the pixel and the orphan map.
+        // OLCI positions outside of the region are stored as NO_VALUE, so the SLSTR pixels looking them up are dropped.
+        final String key = String.format("%s_misrOlciImageMap_%d_%d_%d_%d", bandType, olciRegion.x, olciRegion.y,
+                                         olciRegion.width, olciRegion.height);
+        return session.get(key, () -> {
+            try (StageTimer.Stage ignored = startStage("misrOlciImageMap")) {
+                return createMisrOlciImageMap();
+            }
+        });
+    }
+
+    private GridLookupTable createMisrOlciImageMap() throws IOException {
+        final int[] bounds = createEmptyBounds();
+        final CoregistrationSession.SlstrIndices indices = session.getSlstrIndices(viewtype);
+        addMisrKeyBounds(indices, slstrWidth, slstrHeight, bounds);
+        final CoregistrationSession.SlstrIndices orphanIndices = session.getSlstrOrphanIndices(viewtype);
+        addMisrKeyBounds(orphanIndices, orphanIndices.width, orphanIndices.height, bounds);
+        final GridLookupTable table = createTable(bounds);
+        if (session.getCameraThreads() > 1) {
+            putOlciImageIndicesByCamera(table);
+        } else {
+            // the instrument grid is streamed in (cam, line, detector) order, so the last position wins as before
+            session.readMisrCorrespondence(bandType, false,
+                                           (firstIndex, length, values) -> putOlciImageIndices(table, length, values, olciRegion, null));
+        }
+        return table;
+    }
+
+    private void putOlciImageIndicesByCamera(GridLookupTable table) throws IOException {
+        // The cameras are decoded concurrently without locking the table, each cell is only written by the camera
+        // which writes it last in the sequential (cam, line, detector) order, so the table is the same as if it was
+        // filled sequentially. First the cells written by each camera are collected from the MISR keys alone, then
+        // each camera writes the cells which are not written by a later camera, in the order of its lines.
+        final int numCams = session.getInstrumentGridShape().numCams;
+        final BitSet[] writtenCells = new BitSet[numCams];
+        session.forEachCamera(cam -> {
+            final BitSet cells = new BitSet(table.size());
+            session.readMisrKeys(bandType, false, cam, (firstIndex, length, values) -> {
+                for (int i = 0; i < length; i++) {
+                    final int index = getTableIndex(table, values[0][i], values[1][i]);
+                    if (index >= 0) {
+                        cells.set(index);
+                    }
+                }
+            });
+            writtenCells[cam] = cells;
+        });
+        final BitSet[] overwrittenCells = new BitSet[numCams];
+        final BitSet laterCells = new BitSet(table.size());
+        for (int cam = numCams - 1; cam >= 0; cam--) {
+            overwrittenCells[cam] = (BitSet) laterCells.clone();
+            laterCells.or(writtenCells[cam]);
+            writtenCells[cam] = null;
+        }
+        session.forEachCamera(cam -> session.readMisrCorrespondence(
+                bandType, false, cam,
+                (firstIndex, length, values) -> putOlciImageIndices(table, length, values, olciRegion, overwrittenCells[cam])));
+    }
+
+    // values are the MISR columns and rows and the OLCI image rows and columns of the instrument grid positions,
+    // cells in skippedCells are not written, it may be null
+    private static void putOlciImageIndices(GridLookupTable table, int length, int[][] values, Rectangle olciRegion,
+                                            BitSet skippedCells) {
+        final int[] cols = values[0];
+        final int[] rows = values[1];
+        final int[] olciRows = values[2];
+        final int[] olciCols = values[3];
+        for (int i = 0; i < length; i++) {
+            final int index = getTableIndex(table, cols[i], rows[i]);
+            if (index >= 0 && (skippedCells == null || !skippedCells.get(index))) {
+                table.putAt(index, getOlciImageIndex(olciRows[i], olciCols[i], olciRegion));
+            }
+        }
+    }
+
+    private static int getTableIndex(GridLookupTable table, int col, int row) {
+        return col >= 0 && row >= 0 ? table.indexOf(col, row) : -1;
+    }
+
+    private static int getOlciImageIndex(int row, int col, Rectangle olciRegion) {
+        // an invalid position overwrites a previous valid one, whether it is outside of the image or the region
+        if (olciRegion.contains(col, row)) {
+            return (row - olciRegion.y) * olciRegion.width + col - olciRegion.x;
+        }
+        return GridLookupTable.NO_VALUE;
+    }
+
+    // bounds are {min0, max0, min1, max1}
+    private static int[] createEmptyBounds() {
+        return new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE};
+    }
+
+    private static void addToBounds(int key0, int key1, int[] bounds) {
+        bounds[0] = Math.min(bounds[0], key0);
+        bounds[1] = Math.max(bounds[1], key0);
+        bounds[2] = Math.min(bounds[2], key1);
+        bounds[3] = Math.max(bounds[3], key1);
+    }
+
+    private static GridLookupTable createTable(int[] bounds) {
+        if (bounds[0] > bounds[1]) {
+            return GridLookupTable.create2D(0, -1, 0, -1);
+        }
+        return GridLookupTable.create2D(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    // adds the MISR (col/row) positions of steps 1 and 2 as they are looked up by joinSlstrOlci()
+    private static void addMisrKeyBounds(CoregistrationSession.SlstrIndices indices, int width, int height, int[] bounds) {
+        final int rowOffset = 4 * getMinScan(indices, width, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int index = y * indices.width + x;
+                final short scan = indices.scan[index];
+                final short pixel = indices.pixel[index];
+                final byte detector = indices.detector[index];
+                if (scan != -1 && pixel != -1 && detector != -1) {
+                    addToBounds(getCol(scan, pixel, detector), getRow(scan, pixel, detector) - rowOffset, bounds);
+                }
+            }
+        }
+    }
+
+    public CorrespondenceIndex getOrphanOlciMap() throws IOException {
+        //Provides mapping between orphan SLSTR pixels and OLCI image grid
+        final CoregistrationSession.SlstrIndices orphanIndices;
+        try (StageTimer.Stage ignored = startStage("slstrOrphanIndices")) {
+            orphanIndices = session.getSlstrOrphanIndices(viewtype);
+        }
+        final GridLookupTable misrOlciImageMap = getMisrOlciImageMap();
+        CoregistrationSession.checkInterrupted();
+        try (StageTimer.Stage ignored = startStage("orphanJoin")) {
+            return joinSlstrOlci(orphanIndices, orphanIndices.width, orphanIndices.height, misrOlciImageMap, olciRegion.width, olciRegion.height,
+                                 session.getStorage());
+        }
+    }
+
+    public CorrespondenceIndex getSlstrOlciMap() throws IOException {
+        //Provides mapping between SLSTR image grid and OLCI image grid
+        final CoregistrationSession.SlstrIndices indices;
+        try (StageTimer.Stage ignored = startStage("slstrIndices")) {
+            indices = session.getSlstrIndices(viewtype);
+        }
+        final GridLookupTable misrOlciImageMap = getMisrOlciImageMap();
+        CoregistrationSession.checkInterrupted();
+        try (StageTimer.Stage ignored = startStage("pixelJoin")) {
+            return joinSlstrOlci(indices, slstrWidth, slstrHeight, misrOlciImageMap, olciRegion.width, olciRegion.height,
+                                 session.getStorage());
+        }
+    }
+
+    /**
+     * Computes the correspondence index from arrays held in memory. The result is the same as the one of
+     * {@link #getSlstrOlciMap()} for the same data.
+     *
+     * @param scan        the SLSTR scan indices, indexed by {@code y * slstrWidth + x}
+     * @param pixel       the SLSTR pixel indices
+     * @param detector    the SLSTR detector indices
+     * @param slstrWidth  the width of the SLSTR image
+     * @param slstrHeight the height of the SLSTR image
+     * @param misrCols    the MISR columns of the OLCI instrument grid positions of the band, in (N_CAM, N_LINE_OLC,
+     *                    N_DET_CAM) order
+     * @param misrRows    the MISR rows of the instrument grid positions
+     * @param olciCols    the OLCI image columns of the instrument grid positions (L1b_col_17)
+     * @param olciRows    the OLCI image rows of the instrument grid positions (L1b_row_17)
+     * @param olciWidth   the width of the OLCI image
+     * @param olciHeight  the height of the OLCI image
+     * @return the correspondence index of the OLCI image
+     */
+    public static CorrespondenceIndex computeCorrespondence(short[] scan, short[] pixel, byte[] detector,
+                                                            int slstrWidth, int slstrHeight,
+                                                            int[] misrCols, int[] misrRows, int[] olciCols, int[] olciRows,
+                                                            int olciWidth, int olciHeight) {
+        final CoregistrationSession.SlstrIndices indices =
+                new CoregistrationSession.SlstrIndices(slstrWidth, slstrHeight, scan, pixel, detector);
+        final int[] bounds = createEmptyBounds();
+        addMisrKeyBounds(indices, slstrWidth, slstrHeight, bounds);
+        final GridLookupTable table = createTable(bounds);
+        putOlciImageIndices(table, misrCols.length, new int[][]{misrCols, misrRows, olciRows, olciCols},
+                            new Rectangle(olciWidth, olciHeight), null);
+        return joinSlstrOlci(indices, slstrWidth, slstrHeight, table, olciWidth, olciHeight, BufferStorage.HEAP);
+    }
+
+    private StageTimer.Stage startStage(String stage) {
+        return stageTimer.start(stage, bandType);
+    }
+
+    // Performs steps 1 to 4 in a single pass over the SLSTR image grid.
+    // The SLSTR positions are traversed in the same (x, y) order as the keys of the former TreeMap of step 1,
+    // so if several SLSTR pixels map to the same OLCI pixel, the last one is kept as before.
+    private static CorrespondenceIndex joinSlstrOlci(CoregistrationSession.SlstrIndices indices, int width, int height,
+                                                     GridLookupTable misrOlciImageMap, int olciNumCols, int olciNumRows,
+                                                     BufferStorage storage) {
+        final short[] scans = indices.scan;
+        final short[] pixels = indices.pixel;
+        final byte[] detectors = indices.detector;
+        final int rowOffset = 4 * getMinScan(indices, width, height); // step 2 is rescaled to the first scan
+
+        final CorrespondenceIndex.Builder gridMap = new CorrespondenceIndex.Builder(olciNumCols, olciNumRows, storage);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                final int index = y * indices.width + x;
+                final short scan = scans[index];
+                final short pixel = pixels[index];
+                final byte detector = detectors[index];
+                if (scan != -1 && pixel != -1 && detector != -1) { // 1
+                    final int col = getCol(scan, pixel, detector); // 2
+                    final int row = getRow(scan, pixel, detector) - rowOffset;
+                    final int olciIndex = misrOlciImageMap.get(col, row); // 3 and 4
+                    if (olciIndex != GridLookupTable.NO_VALUE) {
+                        gridMap.put(olciIndex % olciNumCols, olciIndex / olciNumCols, x - SLSTR_OFFSET, y);
+                    }
+                }
+            }
+        }
+        return gridMap.build();
+    }
+
+    private static int getMinScan(CoregistrationSession.SlstrIndices indices, int width, int height) {
+        int minScan = Integer.MAX_VALUE;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int index = y * indices.width + x;
+                final short scan = indices.scan[index];
+                if (scan != -1 && indices.pixel[index] != -1 && indices.detector[index] != -1 && scan < minScan) {
+                    minScan = scan;
+                }
+            }
+        }
+        return minScan == Integer.MAX_VALUE ? 0 : minScan;
+    }
+
+    public static class ComparatorIntArray implements java.util.Comparator<int[]>, Serializable {
+        @Override
+        public int compare(int[] left, int[] right) {
+            int comparedLength = Integer.compare(left.length, right.length);
+            if (comparedLength == 0) {
+                for (int i = 0; i < left.length; i++) {
+                    int comparedValue = Integer.compare(left[i], right[i]);
+                    if (comparedValue != 0) {
+                        return comparedValue;
+                    }
+                }
+                return 0;
+            } else {
+                return comparedLength;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+/**
+ * Receives the runs of the processing stages of the co-registration, e.g. to measure their duration.
+ */
+public interface StageTimer {
+
+    /**
+     * Does not record anything.
+     */
+    StageTimer NONE = (stage, bandType) -> () -> {
+    };
+
+    /**
+     * Starts a run of a stage, which is finished by closing the returned object.
+     *
+     * @param stage    the name of the stage
+     * @param bandType the band type the stage is run for
+     */
+    Stage start(String stage, String bandType);
+
+    /**
+     * A run of a stage. Must be closed by the thread which started it.
+     */
+    interface Stage extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,60 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.junit.Assert.*;
+
+public class BufferStorageTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testAllocatedBuffers() throws IOException {
+        final File scratchDir = tempFolder.newFolder();
+        for (BufferStorage storage : new BufferStorage[]{BufferStorage.HEAP, BufferStorage.DIRECT, BufferStorage.mapped(scratchDir)}) {
+            final IntBuffer ints = storage.allocateInts(5);
+            assertEquals(5, ints.capacity());
+            assertEquals(0, ints.get(4));
+            ints.put(4, -1);
+            assertEquals(-1, ints.get(4));
+
+            final FloatBuffer floats = storage.allocateFloats(3);
+            floats.put(2, Float.NaN);
+            assertTrue(Float.isNaN(floats.get(2)));
+            assertEquals(storage != BufferStorage.HEAP, ints.isDirect());
+        }
+        // the scratch files are deleted when they are mapped
+        assertEquals(0, scratchDir.list().length);
+    }
+
+    @Test
+    public void testForName() {
+        assertSame(BufferStorage.HEAP, BufferStorage.forName("heap", null));
+        assertSame(BufferStorage.DIRECT, BufferStorage.forName("Direct", null));
+        assertEquals(BufferStorage.MAPPED_NAME, BufferStorage.forName("MAPPED", null).getName());
+        try {
+            BufferStorage.forName("Disk", null);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testIndexInDirectBuffers() {
+        final CorrespondenceIndex index = new CorrespondenceIndex.Builder(3, 2, BufferStorage.DIRECT)
+                .put(1, 1, 7, 8).put(1, 1, 9, 10).build();
+
+        assertEquals(1, index.size());
+        assertEquals(9, index.getSlstrX(1, 1));
+        assertEquals(10, index.getSlstrY(1, 1));
+        assertEquals(CorrespondenceIndex.NO_CORRESPONDENCE, index.getSlstrX(0, 0));
+    }
+}
@@ -0,0 +1,89 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class CorrespondenceIndexCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testStoreAndLoad() throws IOException {
+        CorrespondenceIndexCache cache = new CorrespondenceIndexCache(tempFolder.getRoot(), "key");
+        CorrespondenceIndex index = new CorrespondenceIndex.Builder(3, 2).put(0, 0, 4, 5).put(2, 1, 1200, 2399).build();
+        cache.store("S3PixelMap", index);
+
+        CorrespondenceIndex loaded = cache.load("S3PixelMap");
+        assertNotNull(loaded);
+        assertIndexEquals(index, loaded);
+    }
+
+    @Test
+    public void testStoreAndLoadLargeValues() throws IOException {
+        CorrespondenceIndexCache cache = new CorrespondenceIndexCache(tempFolder.getRoot(), "key");
+        CorrespondenceIndex index = new CorrespondenceIndex.Builder(2, 2).put(1, 1, 40000, 3).build();
+        cache.store("aoOrphanMap", index);
+
+        CorrespondenceIndex loaded = cache.load("aoOrphanMap");
+        assertNotNull(loaded);
+        assertIndexEquals(index, loaded);
+    }
+
+    @Test
+    public void testLoadIntoBuffersOutsideOfHeap() throws IOException {
+        CorrespondenceIndexCache cache = new CorrespondenceIndexCache(tempFolder.getRoot(), "key");
+        CorrespondenceIndex smallIndex = new CorrespondenceIndex.Builder(3, 2).put(0, 0, 4, 5).put(2, 1, 1200, 2399).build();
+        CorrespondenceIndex largeIndex = new CorrespondenceIndex.Builder(2, 2).put(1, 1, 40000, 3).build();
+        cache.store("S3PixelMap", smallIndex);
+        cache.store("aoOrphanMap", largeIndex);
+
+        assertIndexEquals(smallIndex, cache.load("S3PixelMap", BufferStorage.DIRECT));
+        assertIndexEquals(largeIndex, cache.load("aoOrphanMap", BufferStorage.mapped(tempFolder.newFolder())));
+    }
+
+    @Test
+    public void testLoadMissing() {
+        CorrespondenceIndexCache cache = new CorrespondenceIndexCache(tempFolder.getRoot(), "key");
+        assertNull(cache.load("S1PixelMap"));
+    }
+
+    @Test
+    public void testCreateKey() throws IOException {
+        File manifest = tempFolder.newFile("xfdumanifest.xml");
+        File slstrDir = tempFolder.newFolder("slstr");
+        Files.write(manifest.toPath(), "manifest".getBytes(StandardCharsets.US_ASCII));
+        Files.write(new File(slstrDir, "indices_an.nc").toPath(), new byte[]{1, 2, 3});
+        Files.write(new File(slstrDir, "indices_ao.nc").toPath(), new byte[]{4, 5, 6});
+
+        String key = CorrespondenceIndexCache.createKey(manifest, slstrDir, 4865, 4091);
+        assertEquals(key, CorrespondenceIndexCache.createKey(manifest, slstrDir, 4865, 4091));
+        assertNotEquals(key, CorrespondenceIndexCache.createKey(manifest, slstrDir, 1217, 1023));
+
+        Files.write(new File(slstrDir, "indices_ao.nc").toPath(), new byte[]{4, 5, 7});
+        assertNotEquals(key, CorrespondenceIndexCache.createKey(manifest, slstrDir, 4865, 4091));
+    }
+
+    private static void assertIndexEquals(CorrespondenceIndex expected, CorrespondenceIndex actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        assertEquals(expected.size(), actual.size());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getSlstrX(x, y), actual.getSlstrX(x, y));
+                assertEquals(expected.getSlstrY(x, y), actual.getSlstrY(x, y));
+            }
+        }
+    }
+}
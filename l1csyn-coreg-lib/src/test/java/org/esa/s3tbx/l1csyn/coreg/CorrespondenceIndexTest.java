@@ -0,0 +1,107 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CorrespondenceIndexTest {
+
+    @Test
+    public void testPutAndGet() {
+        CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(4, 3);
+        builder.put(0, 0, 10, 20);
+        builder.put(3, 2, 11, 21);
+        CorrespondenceIndex index = builder.build();
+
+        assertEquals(4, index.getWidth());
+        assertEquals(3, index.getHeight());
+        assertEquals(2, index.size());
+        assertTrue(index.contains(0, 0));
+        assertEquals(10, index.getSlstrX(0, 0));
+        assertEquals(20, index.getSlstrY(0, 0));
+        assertEquals(11, index.getSlstrX(3, 2));
+        assertEquals(21, index.getSlstrY(3, 2));
+        assertFalse(index.contains(1, 0));
+        assertEquals(CorrespondenceIndex.NO_CORRESPONDENCE, index.getSlstrX(1, 0));
+        assertEquals(CorrespondenceIndex.NO_CORRESPONDENCE, index.getSlstrY(1, 0));
+    }
+
+    @Test
+    public void testOutsideBounds() {
+        CorrespondenceIndex index = new CorrespondenceIndex.Builder(2, 2).put(1, 1, 5, 6).build();
+        assertFalse(index.contains(-1, 0));
+        assertFalse(index.contains(0, -1));
+        assertFalse(index.contains(2, 0));
+        assertFalse(index.contains(0, 2));
+        assertEquals(CorrespondenceIndex.NO_CORRESPONDENCE, index.getSlstrX(2, 1));
+    }
+
+    @Test
+    public void testLastPutWins() {
+        CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(2, 2);
+        builder.put(1, 0, 5, 6);
+        builder.put(1, 0, 7, 8);
+        CorrespondenceIndex index = builder.build();
+        assertEquals(1, index.size());
+        assertEquals(7, index.getSlstrX(1, 0));
+        assertEquals(8, index.getSlstrY(1, 0));
+    }
+
+    @Test
+    public void testEmpty() {
+        CorrespondenceIndex index = new CorrespondenceIndex.Builder(3, 3).build();
+        assertTrue(index.isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBuilderCannotBeReused() {
+        CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(2, 2);
+        builder.build();
+        builder.put(0, 0, 1, 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutOutsideRaster() {
+        new CorrespondenceIndex.Builder(2, 2).put(2, 0, 1, 1);
+    }
+
+    @Test
+    public void testGetSlstrBounds() {
+        CorrespondenceIndex index = new CorrespondenceIndex.Builder(4, 4)
+                .put(0, 0, 10, 20)
+                .put(1, 1, 12, 18)
+                .put(3, 3, 30, 40)
+                .build();
+        assertEquals(new Rectangle(10, 18, 3, 3), index.getSlstrBounds(new Rectangle(0, 0, 2, 2)));
+        assertEquals(new Rectangle(10, 18, 21, 23), index.getSlstrBounds(new Rectangle(-5, -5, 20, 20)));
+        assertTrue(index.getSlstrBounds(new Rectangle(2, 0, 2, 2)).isEmpty());
+    }
+
+    @Test
+    public void testGetCoverage() {
+        // the left half of a raster spanning several blocks is mapped, with one gap
+        final int size = 2 * CorrespondenceIndex.BLOCK_SIZE + 5;
+        final CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(size, size);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size / 2; x++) {
+                if (x != 3 || y != 40) {
+                    builder.put(x, y, x, y);
+                }
+            }
+        }
+        final CorrespondenceIndex index = builder.build();
+
+        assertEquals(CorrespondenceIndex.Coverage.FULL, index.getCoverage(new Rectangle(0, 0, 10, 40)));
+        assertEquals(CorrespondenceIndex.Coverage.PARTIAL, index.getCoverage(new Rectangle(0, 30, 10, 20)));
+        assertEquals(CorrespondenceIndex.Coverage.PARTIAL, index.getCoverage(new Rectangle(20, 0, 40, 40)));
+        assertEquals(CorrespondenceIndex.Coverage.EMPTY, index.getCoverage(new Rectangle(size / 2, 0, 30, size)));
+        // positions outside of the raster have no correspondence
+        assertEquals(CorrespondenceIndex.Coverage.PARTIAL, index.getCoverage(new Rectangle(-2, 0, 4, 4)));
+        assertEquals(CorrespondenceIndex.Coverage.EMPTY, index.getCoverage(new Rectangle(size, size, 4, 4)));
+    }
+}
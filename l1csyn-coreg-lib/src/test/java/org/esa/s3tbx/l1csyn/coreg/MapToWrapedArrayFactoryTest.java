@@ -0,0 +1,46 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MapToWrapedArrayFactoryTest {
+
+    @Test
+    public void testWrappedArray2() {
+        Map<int[], int[]> map = new TreeMap<>(new SlstrMisrTransform.ComparatorIntArray());
+        map.put(new int[]{3, 7}, new int[]{1, 2, 3});
+        map.put(new int[]{5, 4}, new int[]{4, 5, 6});
+
+        Map<int[], int[]> wrapped = MapToWrapedArrayFactory.createWrappedArray(map);
+        assertTrue(wrapped instanceof MapToWrapedArrayFactory.WrappedArray2);
+        assertArrayEquals(new int[]{1, 2, 3}, wrapped.get(new int[]{3, 7}));
+        assertArrayEquals(new int[]{4, 5, 6}, wrapped.get(new int[]{5, 4}));
+        assertTrue(wrapped.containsKey(new int[]{5, 4}));
+        assertFalse(wrapped.containsKey(new int[]{4, 4}));
+        assertNull(wrapped.get(new int[]{4, 5}));
+        assertNull(wrapped.get(new int[]{2, 7}));
+        assertNull(wrapped.get(new int[]{3, 7, 0}));
+    }
+
+    @Test
+    public void testWrappedArray3() {
+        Map<int[], int[]> map = new TreeMap<>(new SlstrMisrTransform.ComparatorIntArray());
+        map.put(new int[]{0, 10, 100}, new int[]{1, 2});
+        map.put(new int[]{4, 0, 740}, new int[]{3, 4});
+
+        Map<int[], int[]> wrapped = MapToWrapedArrayFactory.createWrappedArray(map);
+        assertTrue(wrapped instanceof MapToWrapedArrayFactory.WrappedArray3);
+        assertArrayEquals(new int[]{1, 2}, wrapped.get(new int[]{0, 10, 100}));
+        assertArrayEquals(new int[]{3, 4}, wrapped.get(new int[]{4, 0, 740}));
+        assertNull(wrapped.get(new int[]{4, 10, 740}));
+        assertNull(wrapped.get(new int[]{5, 0, 740}));
+        assertFalse(wrapped.containsKey(new int[]{0, 10}));
+    }
+}
@@ -0,0 +1,295 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.NetcdfFileWriter;
+import ucar.nc2.Variable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Generates synthetic MISR products and SLSTR index files with the variables and attributes read by
+ * {@link CoregistrationSession}, for testing and profiling the MISR path without real data.
+ * <p>
+ * The written files are
+ * <ul>
+ * <li>{@code misr/misreg_Oref_Oa17.nc} with {@code L1b_row_17} and {@code L1b_col_17}</li>
+ * <li>{@code misr/misregist_Oref_<band>.nc} for S1 to S6 and ao with {@code row_corresp_*}, {@code col_corresp_*}
+ * and {@code L1b_orphan_*}</li>
+ * <li>{@code misr/xfdumanifest.xml}, which is empty</li>
+ * <li>{@code slstr/indices_an.nc} and {@code slstr/indices_ao.nc} with the scan, pixel and detector indices of the
+ * image and of the orphan pixels</li>
+ * </ul>
+ * The geometry is simple: the detectors of all cameras side by side cover the OLCI image columns and each
+ * instrument line is an OLCI image row. The MISR positions scale the OLCI image linearly onto the SLSTR grid of
+ * the view. SLSTR image pixels are mapped one to one onto the MISR positions, except for a stripe of unmapped
+ * pixels at the western edge. Hence the OLCI pixel {@code (x, y)} is the last one mapped to the SLSTR pixel
+ * {@code (x * slstrWidth / olciWidth, y * slstrHeight / olciHeight)}.
+ * <p>
+ * Optionally the first detectors of each camera but the first overlap the last detectors of the previous camera on
+ * the MISR grid, so adjacent cameras map different OLCI pixels to the same MISR positions and the later camera wins.
+ * <p>
+ * The variables are written in chunks of lines, so scenes of any length can be generated with little memory.
+ * Run {@link #main(String[])} to generate a scene on the command line.
+ */
+public class MisrTestProductGenerator {
+
+    static final String[] BAND_TYPES = {"S1", "S2", "S3", "S4", "S5", "S6", "ao"};
+
+    static final int UNMAPPED_EDGE = 10;
+
+    private static final int FIRST_SCAN = 1000;
+    private static final double MISR_SCALE = 0.1;
+    private static final int CHUNK_LINES = 1024;
+
+    private final Scene scene;
+    private final int numDetectors;
+    private final int cameraOverlap;
+
+    public MisrTestProductGenerator(Scene scene) {
+        this(scene, 0);
+    }
+
+    /**
+     * @param cameraOverlap the number of detectors at the start of each camera whose MISR positions are shifted onto
+     *                      the last detectors of the previous camera
+     */
+    public MisrTestProductGenerator(Scene scene, int cameraOverlap) {
+        this.scene = scene;
+        this.numDetectors = (scene.olciWidth + Scene.NUM_CAMS - 1) / Scene.NUM_CAMS;
+        this.cameraOverlap = cameraOverlap;
+    }
+
+    /**
+     * Usage: {@code MisrTestProductGenerator <outputDir> [frame | stripe <numFrames> | scaled <factor>]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: MisrTestProductGenerator <outputDir> [frame | stripe <numFrames> | scaled <factor>]");
+            System.exit(1);
+        }
+        Scene scene = Scene.FULL_FRAME;
+        if (args.length > 2 && args[1].equals("stripe")) {
+            scene = Scene.longStripe(Integer.parseInt(args[2]));
+        } else if (args.length > 2 && args[1].equals("scaled")) {
+            scene = Scene.FULL_FRAME.scaled(Double.parseDouble(args[2]));
+        }
+        final File manifest = new MisrTestProductGenerator(scene).write(new File(args[0]));
+        System.out.printf("Written %s, MISR manifest %s%n", scene, manifest);
+    }
+
+    /**
+     * Writes the MISR product into {@code dir/misr} and the SLSTR index files into {@code dir/slstr}.
+     *
+     * @return the manifest of the MISR product
+     */
+    public File write(File dir) throws IOException {
+        final File misrDir = new File(dir, "misr");
+        final File slstrDir = new File(dir, "slstr");
+        Files.createDirectories(misrDir.toPath());
+        Files.createDirectories(slstrDir.toPath());
+        try {
+            writeOlciFile(new File(misrDir, "misreg_Oref_Oa17.nc"));
+            for (String bandType : BAND_TYPES) {
+                writeMisrBandFile(new File(misrDir, "misregist_Oref_" + bandType + ".nc"), bandType);
+            }
+            writeSlstrIndices(new File(slstrDir, "indices_an.nc"), "an", scene.slstrWidth);
+            writeSlstrIndices(new File(slstrDir, "indices_ao.nc"), "ao", scene.slstrObliqueWidth);
+        } catch (InvalidRangeException e) {
+            throw new IOException(e);
+        }
+        final File manifest = new File(misrDir, "xfdumanifest.xml");
+        Files.write(manifest.toPath(), new byte[0]);
+        return manifest;
+    }
+
+    private void writeOlciFile(File file) throws IOException, InvalidRangeException {
+        try (NetcdfFileWriter writer = createInstrumentGridFile(file)) {
+            final Variable rowVariable = writer.addVariable(null, "L1b_row_17", DataType.INT, "N_CAM N_LINE_OLC N_DET_CAM");
+            final Variable colVariable = writer.addVariable(null, "L1b_col_17", DataType.INT, "N_CAM N_LINE_OLC N_DET_CAM");
+            writer.create();
+            writeInstrumentGrid(writer, new Variable[]{rowVariable, colVariable}, (olciCol, line, det, values) -> {
+                values[0] = olciCol < 0 ? -1 : line;
+                values[1] = olciCol;
+            });
+        }
+    }
+
+    private void writeMisrBandFile(File file, String bandType) throws IOException, InvalidRangeException {
+        final String suffix = bandType.startsWith("S") ? bandType + "_an" : bandType;
+        final int slstrWidth = bandType.startsWith("S") ? scene.slstrWidth : scene.slstrObliqueWidth;
+        try (NetcdfFileWriter writer = createInstrumentGridFile(file)) {
+            final Variable rowVariable = writer.addVariable(null, "row_corresp_" + suffix, DataType.INT, "N_CAM N_LINE_OLC N_DET_CAM");
+            final Variable colVariable = writer.addVariable(null, "col_corresp_" + suffix, DataType.INT, "N_CAM N_LINE_OLC N_DET_CAM");
+            final Variable orphanVariable = writer.addVariable(null, "L1b_orphan_" + suffix, DataType.INT, "N_CAM N_LINE_OLC N_DET_CAM");
+            for (Variable variable : new Variable[]{rowVariable, colVariable}) {
+                writer.addVariableAttribute(variable, new Attribute("scale_factor", MISR_SCALE));
+                writer.addVariableAttribute(variable, new Attribute("add_offset", 0));
+            }
+            writer.create();
+            writeInstrumentGrid(writer, new Variable[]{rowVariable, colVariable, orphanVariable}, (olciCol, line, det, values) -> {
+                if (olciCol < 0) {
+                    values[0] = toRaw(-1);
+                    values[1] = toRaw(-1);
+                    values[2] = -1;
+                } else {
+                    final int misrCol = olciCol >= numDetectors && det < cameraOverlap ? olciCol - cameraOverlap : olciCol;
+                    values[0] = toRaw((int) ((long) line * scene.slstrHeight / scene.olciHeight));
+                    values[1] = toRaw((int) ((long) misrCol * slstrWidth / scene.olciWidth));
+                    // every 8th detector sees an orphan, numbered from 1
+                    values[2] = det % 8 == 0 ? det / 8 % scene.numOrphans + 1 : -1;
+                }
+            });
+        }
+    }
+
+    private void writeSlstrIndices(File file, String view, int slstrWidth) throws IOException, InvalidRangeException {
+        try (NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath())) {
+            writer.setLargeFile(true);
+            writer.addDimension(null, "rows", scene.slstrHeight);
+            writer.addDimension(null, "columns", slstrWidth);
+            writer.addDimension(null, "orphan_pixels", scene.numOrphans);
+            final Variable[] image = {
+                    writer.addVariable(null, "scan_" + view, DataType.SHORT, "rows columns"),
+                    writer.addVariable(null, "pixel_" + view, DataType.SHORT, "rows columns"),
+                    writer.addVariable(null, "detector_" + view, DataType.BYTE, "rows columns")
+            };
+            final Variable[] orphans = {
+                    writer.addVariable(null, "scan_orphan_" + view, DataType.SHORT, "rows orphan_pixels"),
+                    writer.addVariable(null, "pixel_orphan_" + view, DataType.SHORT, "rows orphan_pixels"),
+                    writer.addVariable(null, "detector_orphan_" + view, DataType.BYTE, "rows orphan_pixels")
+            };
+            writer.create();
+            writeIndices(writer, image, slstrWidth, UNMAPPED_EDGE, 1.0);
+            // the orphans are spread over the columns of the image
+            writeIndices(writer, orphans, scene.numOrphans, 0, (double) slstrWidth / scene.numOrphans);
+        }
+    }
+
+    // scan and detector follow the SLSTR rows, the pixel is the column multiplied by the given factor
+    private void writeIndices(NetcdfFileWriter writer, Variable[] variables, int width, int unmappedEdge, double pixelScale)
+            throws IOException, InvalidRangeException {
+        for (int row = 0; row < scene.slstrHeight; row += CHUNK_LINES) {
+            final int rows = Math.min(CHUNK_LINES, scene.slstrHeight - row);
+            final short[] scans = new short[rows * width];
+            final short[] pixels = new short[rows * width];
+            final byte[] detectors = new byte[rows * width];
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < width; x++) {
+                    final int index = y * width + x;
+                    final boolean mapped = x >= unmappedEdge;
+                    scans[index] = (short) (mapped ? FIRST_SCAN + (row + y) / 4 : -1);
+                    pixels[index] = (short) (mapped ? (int) (x * pixelScale) : -1);
+                    detectors[index] = (byte) (mapped ? (row + y) % 4 : -1);
+                }
+            }
+            final int[] origin = {row, 0};
+            final int[] shape = {rows, width};
+            writer.write(variables[0], origin, Array.factory(DataType.SHORT, shape, scans));
+            writer.write(variables[1], origin, Array.factory(DataType.SHORT, shape, pixels));
+            writer.write(variables[2], origin, Array.factory(DataType.BYTE, shape, detectors));
+        }
+    }
+
+    private NetcdfFileWriter createInstrumentGridFile(File file) throws IOException {
+        final NetcdfFileWriter writer = NetcdfFileWriter.createNew(NetcdfFileWriter.Version.netcdf3, file.getPath());
+        writer.setLargeFile(true);
+        writer.addDimension(null, "N_CAM", Scene.NUM_CAMS);
+        writer.addDimension(null, "N_LINE_OLC", scene.olciHeight);
+        writer.addDimension(null, "N_DET_CAM", numDetectors);
+        return writer;
+    }
+
+    private void writeInstrumentGrid(NetcdfFileWriter writer, Variable[] variables, InstrumentValues instrumentValues)
+            throws IOException, InvalidRangeException {
+        final int[] values = new int[variables.length];
+        for (int cam = 0; cam < Scene.NUM_CAMS; cam++) {
+            for (int line = 0; line < scene.olciHeight; line += CHUNK_LINES) {
+                final int lines = Math.min(CHUNK_LINES, scene.olciHeight - line);
+                final int[][] chunks = new int[variables.length][lines * numDetectors];
+                for (int l = 0; l < lines; l++) {
+                    for (int det = 0; det < numDetectors; det++) {
+                        final int col = cam * numDetectors + det;
+                        instrumentValues.compute(col < scene.olciWidth ? col : -1, line + l, det, values);
+                        for (int v = 0; v < variables.length; v++) {
+                            chunks[v][l * numDetectors + det] = values[v];
+                        }
+                    }
+                }
+                for (int v = 0; v < variables.length; v++) {
+                    writer.write(variables[v], new int[]{cam, line, 0},
+                                 Array.factory(DataType.INT, new int[]{1, lines, numDetectors}, chunks[v]));
+                }
+            }
+        }
+    }
+
+    // inverse of the decoding in CoregistrationSession, placed in the middle of the cell to be robust against rounding
+    private static int toRaw(int value) {
+        return value < 0 ? (int) Math.round(value / MISR_SCALE) : (int) Math.round((value + 0.5) / MISR_SCALE);
+    }
+
+    private interface InstrumentValues {
+        /**
+         * @param olciCol the OLCI image column or -1 if the detector is outside of the image
+         */
+        void compute(int olciCol, int line, int det, int[] values);
+    }
+
+    /**
+     * The dimensions of a synthetic scene.
+     */
+    public static final class Scene {
+
+        static final int NUM_CAMS = 5;
+
+        /**
+         * A full frame of OLCI FR and the corresponding SLSTR 500 m grids.
+         */
+        public static final Scene FULL_FRAME = new Scene(4865, 4091, 3000, 1500, 2400, 374);
+
+        public final int olciWidth;
+        public final int olciHeight;
+        public final int slstrWidth;
+        public final int slstrObliqueWidth;
+        public final int slstrHeight;
+        public final int numOrphans;
+
+        public Scene(int olciWidth, int olciHeight, int slstrWidth, int slstrObliqueWidth, int slstrHeight, int numOrphans) {
+            this.olciWidth = olciWidth;
+            this.olciHeight = olciHeight;
+            this.slstrWidth = slstrWidth;
+            this.slstrObliqueWidth = slstrObliqueWidth;
+            this.slstrHeight = slstrHeight;
+            this.numOrphans = numOrphans;
+        }
+
+        /**
+         * @return a stripe of the given number of full frames in along-track direction
+         */
+        public static Scene longStripe(int numFrames) {
+            final Scene frame = FULL_FRAME;
+            return new Scene(frame.olciWidth, frame.olciHeight * numFrames, frame.slstrWidth, frame.slstrObliqueWidth,
+                             frame.slstrHeight * numFrames, frame.numOrphans);
+        }
+
+        /**
+         * @return this scene with all dimensions multiplied by the given factor
+         */
+        public Scene scaled(double factor) {
+            return new Scene((int) (olciWidth * factor), (int) (olciHeight * factor), (int) (slstrWidth * factor),
+                             (int) (slstrObliqueWidth * factor), (int) (slstrHeight * factor),
+                             Math.max(1, (int) (numOrphans * factor)));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("OLCI %dx%d, SLSTR nadir %dx%d, oblique %dx%d, %d orphans", olciWidth, olciHeight,
+                                 slstrWidth, slstrHeight, slstrObliqueWidth, slstrHeight, numOrphans);
+        }
+    }
+}
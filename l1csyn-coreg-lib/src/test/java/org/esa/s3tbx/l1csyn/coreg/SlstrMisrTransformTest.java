@@ -0,0 +1,170 @@
+package org.esa.s3tbx.l1csyn.coreg;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class SlstrMisrTransformTest {
+
+    // OLCI twice the size of the SLSTR nadir grid, four times the width of the oblique grid
+    private static final MisrTestProductGenerator.Scene SCENE = new MisrTestProductGenerator.Scene(100, 80, 50, 25, 40, 5);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIntArrayComparatorUsedByTreeMap() {
+        Map<int[], Integer> integerTreeMap = new TreeMap<>(new SlstrMisrTransform.ComparatorIntArray());
+        Map<String, Integer> stringTreeMap = new TreeMap<>();
+
+        int value = 0;
+        for (int x = 0; x < 1000; x++) {
+            for (int y = 0; y < 1000; y++) {
+                integerTreeMap.put(new int[]{x, y}, value);
+                stringTreeMap.put("" + x + "_" + y, value);
+                value++;
+            }
+        }
+        for (String key : stringTreeMap.keySet()) {
+            String[] split = key.split("_");
+            int[] iKey = {Integer.parseInt(split[0]), Integer.parseInt(split[1])};
+            assertEquals("Wrong value for key: " + key, stringTreeMap.get(key), integerTreeMap.get(iKey));
+        }
+    }
+
+    @Test
+    public void testGetColRow() {
+        int[] colRow = SlstrMisrTransform.getColRow(0, 1, 2);
+        assertEquals(1, colRow[0]);
+        assertEquals(2, colRow[1]);
+
+        colRow = SlstrMisrTransform.getColRow(1, 2, 3);
+        assertEquals(2, colRow[0]);
+        assertEquals(7, colRow[1]);
+
+        colRow = SlstrMisrTransform.getColRow(2, 3, 4);
+        assertEquals(3, colRow[0]);
+        assertEquals(12, colRow[1]);
+    }
+
+    @Test
+    public void testGetColAndRow() {
+        assertEquals(2, SlstrMisrTransform.getCol(1, 2, 3));
+        assertEquals(7, SlstrMisrTransform.getRow(1, 2, 3));
+        assertEquals(3, SlstrMisrTransform.getCol(2, 3, 4));
+        assertEquals(12, SlstrMisrTransform.getRow(2, 3, 4));
+    }
+
+    @Test
+    public void testSlstrOlciMapOfSyntheticProduct() throws IOException {
+        final File dir = temporaryFolder.getRoot();
+        final File manifest = new MisrTestProductGenerator(SCENE).write(dir);
+        // chunks which do not divide the number of lines
+        final CoregistrationSession session = new CoregistrationSession(manifest, new File(dir, "slstr"), 7);
+
+        final CorrespondenceIndex nadirMap = createTransform(session, "S3").getSlstrOlciMap();
+        assertEquals((50 - MisrTestProductGenerator.UNMAPPED_EDGE) * 40, nadirMap.size());
+        assertFalse(nadirMap.contains(20, 20));
+        assertEquals(10, nadirMap.getSlstrX(21, 21));
+        assertEquals(10, nadirMap.getSlstrY(21, 21));
+        assertEquals(49, nadirMap.getSlstrX(99, 79));
+        assertEquals(39, nadirMap.getSlstrY(99, 79));
+
+        final CorrespondenceIndex obliqueMap = createTransform(session, "ao").getSlstrOlciMap();
+        assertEquals((25 - MisrTestProductGenerator.UNMAPPED_EDGE) * 40, obliqueMap.size());
+        assertFalse(obliqueMap.contains(41, 21));
+        assertEquals(10, obliqueMap.getSlstrX(43, 21));
+        assertEquals(10, obliqueMap.getSlstrY(43, 21));
+    }
+
+    @Test
+    public void testSlstrOlciMapOfRegion() throws IOException {
+        final File dir = temporaryFolder.getRoot();
+        final File manifest = new MisrTestProductGenerator(SCENE).write(dir);
+        final CoregistrationSession session = new CoregistrationSession(manifest, new File(dir, "slstr"));
+
+        final Rectangle region = new Rectangle(20, 20, 30, 30);
+        final CorrespondenceIndex regionMap = new SlstrMisrTransform(session, "S3", region, SCENE.slstrWidth, SCENE.slstrHeight,
+                                                                     StageTimer.NONE).getSlstrOlciMap();
+        assertEquals(30, regionMap.getWidth());
+        assertEquals(30, regionMap.getHeight());
+        // every second OLCI column and row is mapped
+        assertEquals(15 * 15, regionMap.size());
+        assertFalse(regionMap.contains(0, 0));
+        assertEquals(10, regionMap.getSlstrX(1, 1));
+        assertEquals(10, regionMap.getSlstrY(1, 1));
+        assertEquals(24, regionMap.getSlstrX(29, 29));
+        assertEquals(24, regionMap.getSlstrY(29, 29));
+    }
+
+    @Test
+    public void testSlstrOlciMapWithConcurrentCameras() throws IOException {
+        final File dir = temporaryFolder.getRoot();
+        // adjacent cameras map different OLCI pixels to the same MISR positions
+        final File manifest = new MisrTestProductGenerator(SCENE, 4).write(dir);
+        final File slstrDir = new File(dir, "slstr");
+        final CoregistrationSession sequentialSession = new CoregistrationSession(manifest, slstrDir, 7);
+        final CoregistrationSession concurrentSession = new CoregistrationSession(manifest, slstrDir, 7, BufferStorage.HEAP, 3);
+
+        final CorrespondenceIndex expected = createTransform(sequentialSession, "S3").getSlstrOlciMap();
+        final CorrespondenceIndex actual = createTransform(concurrentSession, "S3").getSlstrOlciMap();
+        // the SLSTR pixels at the end of camera 1 are mapped to the OLCI pixels at the start of camera 2
+        assertFalse(expected.contains(37, 21));
+        assertEquals(18, expected.getSlstrX(41, 21));
+        assertEquals(10, expected.getSlstrY(41, 21));
+        assertEquals(expected.size(), actual.size());
+        for (int y = 0; y < SCENE.olciHeight; y++) {
+            for (int x = 0; x < SCENE.olciWidth; x++) {
+                assertEquals(expected.getSlstrX(x, y), actual.getSlstrX(x, y));
+                assertEquals(expected.getSlstrY(x, y), actual.getSlstrY(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void testOrphanOlciMapOfSyntheticProduct() throws IOException {
+        final File dir = temporaryFolder.getRoot();
+        final File manifest = new MisrTestProductGenerator(SCENE).write(dir);
+        final CoregistrationSession session = new CoregistrationSession(manifest, new File(dir, "slstr"));
+
+        final CorrespondenceIndex orphanMap = createTransform(session, "S3").getOrphanOlciMap();
+        // the orphans are located in every 10th SLSTR column
+        assertEquals(5 * 40, orphanMap.size());
+        assertEquals(2, orphanMap.getSlstrX(41, 7));
+        assertEquals(3, orphanMap.getSlstrY(41, 7));
+    }
+
+    @Test
+    public void testComputeCorrespondenceFromArrays() {
+        // a 2 x 2 SLSTR image of scan 10, detector 0, pixels 5 and 6; MISR (col, row) = (pixel, scan * 4 + det - 4 * minScan)
+        final short[] scan = {10, 10, 10, 10};
+        final short[] pixel = {5, 6, 5, 6};
+        final byte[] detector = {0, 0, 0, 0};
+        final int[] misrCols = {5, 6, 7};
+        final int[] misrRows = {0, 0, 0};
+        final int[] olciCols = {1, 2, 3};
+        final int[] olciRows = {1, 1, 1};
+
+        final CorrespondenceIndex index = SlstrMisrTransform.computeCorrespondence(scan, pixel, detector, 2, 2,
+                                                                                   misrCols, misrRows, olciCols, olciRows, 4, 3);
+        assertEquals(2, index.size());
+        // the second SLSTR row shares the MISR positions of the first one and overwrites them
+        assertEquals(0, index.getSlstrX(1, 1));
+        assertEquals(1, index.getSlstrY(1, 1));
+        assertEquals(1, index.getSlstrX(2, 1));
+        assertFalse(index.contains(3, 1));
+    }
+
+    private static SlstrMisrTransform createTransform(CoregistrationSession session, String bandType) {
+        final int slstrWidth = SlstrMisrTransform.getViewType(bandType).equals("an") ? SCENE.slstrWidth : SCENE.slstrObliqueWidth;
+        return new SlstrMisrTransform(session, bandType, SCENE.olciWidth, SCENE.olciHeight, slstrWidth, SCENE.slstrHeight);
+    }
+}
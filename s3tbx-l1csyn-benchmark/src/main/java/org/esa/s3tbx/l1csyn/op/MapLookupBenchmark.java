@@ -0,0 +1,91 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.s3tbx.l1csyn.coreg.MapToWrapedArrayFactory;
+import org.esa.s3tbx.l1csyn.coreg.SlstrMisrTransform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the creation of wrapped arrays from TreeMaps as formerly done for step 2 of the MISR mapping and the lookup
+ * throughput of the wrapped arrays and of the correspondence index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class MapLookupBenchmark {
+
+    @Param({"0.25", "1.0"})
+    private double scale;
+
+    private Map<int[], int[]> scanPixelDetectorMap;
+    private Map<int[], int[]> wrappedArray;
+    private List<int[]> keys;
+    private CorrespondenceIndex correspondenceIndex;
+
+    @Setup
+    public void setUp() {
+        final Scenes scenes = new Scenes(scale);
+        // (scan, pixel, detector) -> (col, row) of the SLSTR grid as created by step 2
+        scanPixelDetectorMap = new TreeMap<>(new SlstrMisrTransform.ComparatorIntArray());
+        keys = new ArrayList<>();
+        for (int y = 0; y < scenes.slstrHeight; y++) {
+            for (int x = 0; x < scenes.slstrWidth; x++) {
+                final int[] key = {y / 4, x, y % 4};
+                scanPixelDetectorMap.put(key, SlstrMisrTransform.getColRow(key[0], key[1], key[2]));
+                keys.add(key);
+            }
+        }
+        wrappedArray = MapToWrapedArrayFactory.createWrappedArray(scanPixelDetectorMap);
+        correspondenceIndex = scenes.createCorrespondenceIndex();
+    }
+
+    @Benchmark
+    public Map<int[], int[]> createWrappedArray() {
+        return MapToWrapedArrayFactory.createWrappedArray(scanPixelDetectorMap);
+    }
+
+    @Benchmark
+    public void wrappedArrayGet(Blackhole blackhole) {
+        for (int[] key : keys) {
+            blackhole.consume(wrappedArray.get(key));
+        }
+    }
+
+    @Benchmark
+    public void treeMapGet(Blackhole blackhole) {
+        for (int[] key : keys) {
+            blackhole.consume(scanPixelDetectorMap.get(key));
+        }
+    }
+
+    @Benchmark
+    public long correspondenceIndexGet() {
+        long sum = 0;
+        for (int y = 0; y < correspondenceIndex.getHeight(); y++) {
+            for (int x = 0; x < correspondenceIndex.getWidth(); x++) {
+                sum += correspondenceIndex.getSlstrX(x, y) + correspondenceIndex.getSlstrY(x, y);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,95 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.BufferStorage;
+import org.esa.s3tbx.l1csyn.coreg.CoregistrationSession;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.s3tbx.l1csyn.coreg.SlstrMisrTransform;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the construction of the correspondence indices from synthetic MISR and SLSTR index files, including
+ * reading the files. A new session is used for every invocation, so nothing is shared between invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class MisrMapBenchmark {
+
+    @Param({"0.25", "1.0"})
+    private double scale;
+
+    @Param({"S3", "ao"})
+    private String bandType;
+
+    @Param({"1", "5"})
+    private int cameraThreads;
+
+    private Path dataDir;
+    private File misrManifest;
+    private File slstrDir;
+    private Product olciProduct;
+    private Product slstrProduct;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Scenes scenes = new Scenes(scale);
+        dataDir = Files.createTempDirectory("l1csyn-benchmark");
+        misrManifest = scenes.writeMisrData(dataDir.toFile());
+        slstrDir = new File(dataDir.toFile(), "slstr");
+        olciProduct = scenes.createOlciProduct();
+        slstrProduct = scenes.createSlstrProduct(slstrDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        olciProduct.dispose();
+        slstrProduct.dispose();
+        try (Stream<Path> paths = Files.walk(dataDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public CorrespondenceIndex slstrOlciMap() throws IOException {
+        return createTransform().getSlstrOlciMap();
+    }
+
+    @Benchmark
+    public CorrespondenceIndex orphanOlciMap() throws IOException {
+        return createTransform().getOrphanOlciMap();
+    }
+
+    private SlstrMisrTransform createTransform() {
+        final CoregistrationSession session = new CoregistrationSession(misrManifest, slstrDir,
+                                                                        CoregistrationSession.DEFAULT_CHUNK_LINES,
+                                                                        BufferStorage.HEAP, cameraThreads);
+        final Band olciBand = olciProduct.getBand("Oa17_radiance");
+        final Band slstrBand = slstrProduct.getBand("S3_radiance_" + SlstrMisrTransform.getViewType(bandType));
+        return new SlstrMisrTransform(session, bandType, olciBand.getRasterWidth(), olciBand.getRasterHeight(),
+                                      slstrBand.getRasterWidth(), slstrBand.getRasterHeight());
+    }
+}
@@ -0,0 +1,66 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.gpf.Tile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MisrOp#computeTile} for a tile in the centre of a synthetic full-size scene. The tile is written
+ * into a new raster for every invocation, so no tile cache is involved for the target.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class MisrOpTileBenchmark {
+
+    @Param({"false", "true"})
+    private boolean fillEmptyPixels;
+
+    @Param({"S3_radiance_an", "misr_flags"})
+    private String bandName;
+
+    @Param({"512"})
+    private int tileSize;
+
+    private MisrOp misrOp;
+    private Band targetBand;
+    private Rectangle tileRectangle;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Scenes scenes = new Scenes(1.0);
+        misrOp = scenes.createMisrOp(fillEmptyPixels, 0);
+        targetBand = misrOp.getTargetProduct().getBand(bandName);
+        tileRectangle = scenes.createCentredTileRectangle(tileSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Scenes.dispose(misrOp);
+    }
+
+    @Benchmark
+    public Tile computeTile() {
+        final Tile tile = Scenes.createTile(targetBand, tileRectangle);
+        misrOp.computeTile(targetBand, tile, ProgressMonitor.NULL);
+        return tile;
+    }
+}
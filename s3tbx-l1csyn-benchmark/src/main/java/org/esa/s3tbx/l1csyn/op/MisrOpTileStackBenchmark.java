@@ -0,0 +1,91 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.gpf.Tile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link MisrOp#computeTileStack} with computing the nadir bands of a tile one by one with
+ * {@link MisrOp#computeTile}. All nadir bands share the same maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class MisrOpTileStackBenchmark {
+
+    @Param({"false", "true"})
+    private boolean fillEmptyPixels;
+
+    @Param({"1", "8", "32"})
+    private int numBands;
+
+    @Param({"512"})
+    private int tileSize;
+
+    private MisrOp misrOp;
+    private final List<Band> targetBands = new ArrayList<>();
+    private Rectangle tileRectangle;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Scenes scenes = new Scenes(1.0);
+        misrOp = scenes.createMisrOp(fillEmptyPixels, numBands - 1);
+        for (Band band : misrOp.getTargetProduct().getBands()) {
+            if (band.getName().endsWith("_an")) {
+                targetBands.add(band);
+            }
+        }
+        tileRectangle = scenes.createCentredTileRectangle(tileSize);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Scenes.dispose(misrOp);
+    }
+
+    @Benchmark
+    public Map<Band, Tile> computeTileStack() {
+        final Map<Band, Tile> tiles = createTiles();
+        misrOp.computeTileStack(tiles, tileRectangle, ProgressMonitor.NULL);
+        return tiles;
+    }
+
+    @Benchmark
+    public Map<Band, Tile> computeTilesOneByOne() {
+        final Map<Band, Tile> tiles = createTiles();
+        for (Map.Entry<Band, Tile> entry : tiles.entrySet()) {
+            misrOp.computeTile(entry.getKey(), entry.getValue(), ProgressMonitor.NULL);
+        }
+        return tiles;
+    }
+
+    private Map<Band, Tile> createTiles() {
+        final Map<Band, Tile> tiles = new LinkedHashMap<>();
+        for (Band band : targetBands) {
+            tiles.put(band, Scenes.createTile(band, tileRectangle));
+        }
+        return tiles;
+    }
+}
@@ -0,0 +1,144 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.s3tbx.l1csyn.coreg.MisrTestProductGenerator;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.esa.snap.core.gpf.Tile;
+import org.esa.snap.core.gpf.internal.TileImpl;
+import org.esa.snap.core.image.ImageManager;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+
+import java.awt.Rectangle;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Synthetic in-memory OLCI and SLSTR products for the benchmarks. The sizes are those of a full OLCI FR frame and
+ * the corresponding SLSTR 500 m grids, multiplied by a scale factor. The MISR product matching the products is
+ * written by {@link #writeMisrData(File)}.
+ */
+final class Scenes {
+
+    final MisrTestProductGenerator.Scene scene;
+    final int olciWidth;
+    final int olciHeight;
+    final int slstrWidth;
+    final int slstrHeight;
+
+    Scenes(double scale) {
+        scene = MisrTestProductGenerator.Scene.FULL_FRAME.scaled(scale);
+        olciWidth = scene.olciWidth;
+        olciHeight = scene.olciHeight;
+        slstrWidth = scene.slstrWidth;
+        slstrHeight = scene.slstrHeight;
+    }
+
+    /**
+     * Writes the MISR product into {@code dir/misr} and the SLSTR index files into {@code dir/slstr}.
+     *
+     * @return the manifest of the MISR product
+     */
+    File writeMisrData(File dir) throws IOException {
+        return new MisrTestProductGenerator(scene).write(dir);
+    }
+
+    Product createOlciProduct() throws Exception {
+        final Product product = new Product("OLCI", "OL_1_EFR", olciWidth, olciHeight);
+        product.addBand(new VirtualBand("Oa17_radiance", ProductData.TYPE_FLOAT32, olciWidth, olciHeight, "50 + X % 7"));
+        product.setSceneGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, olciWidth, olciHeight,
+                                                   10.0, 50.0, 0.003, 0.003));
+        return product;
+    }
+
+    /**
+     * @param slstrDir the directory the product is located in, may be null
+     */
+    Product createSlstrProduct(File slstrDir) throws Exception {
+        return createSlstrProduct(slstrDir, 0);
+    }
+
+    /**
+     * @param numExtraNadirBands the number of additional nadir bands, which share the maps of S3_radiance_an
+     */
+    Product createSlstrProduct(File slstrDir, int numExtraNadirBands) throws Exception {
+        final Product product = new Product("SLSTR", "SL_1_RBT", slstrWidth, slstrHeight);
+        product.addBand(new VirtualBand("S3_radiance_an", ProductData.TYPE_FLOAT32, slstrWidth, slstrHeight, "X * 0.01 + Y * 0.001"));
+        for (int i = 0; i < numExtraNadirBands; i++) {
+            product.addBand(new VirtualBand("S3_extra" + i + "_an", ProductData.TYPE_FLOAT32, slstrWidth, slstrHeight,
+                                            "X * 0.01 + Y * 0.001 + " + i));
+        }
+        product.addBand(new VirtualBand("S3_radiance_ao", ProductData.TYPE_FLOAT32, scene.slstrObliqueWidth, slstrHeight, "X * 0.01 + Y * 0.001"));
+        product.setSceneGeoCoding(new CrsGeoCoding(DefaultGeographicCRS.WGS84, slstrWidth, slstrHeight,
+                                                   10.0, 50.0, 0.003 * olciWidth / slstrWidth, 0.003 * olciHeight / slstrHeight));
+        if (slstrDir != null) {
+            product.setFileLocation(new File(slstrDir, "xfdumanifest.xml"));
+        }
+        return product;
+    }
+
+    /**
+     * Creates a correspondence index which maps the OLCI grid linearly onto the SLSTR grid. Every 50th row and a
+     * stripe at the western edge have no correspondence, so filling empty pixels has work to do.
+     */
+    CorrespondenceIndex createCorrespondenceIndex() {
+        final CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(olciWidth, olciHeight);
+        for (int y = 0; y < olciHeight; y++) {
+            if (y % 50 == 0) {
+                continue;
+            }
+            for (int x = olciWidth / 50; x < olciWidth; x++) {
+                builder.put(x, y, (int) ((long) x * slstrWidth / olciWidth), (int) ((long) y * slstrHeight / olciHeight));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a {@link MisrOp} on new OLCI and SLSTR products, whose nadir and oblique bands are mapped by
+     * {@link #createCorrespondenceIndex()}. It is disposed together with its source products by
+     * {@link #dispose(MisrOp)}.
+     *
+     * @param numExtraNadirBands the number of additional nadir bands, see {@link #createSlstrProduct(File, int)}
+     */
+    MisrOp createMisrOp(boolean fillEmptyPixels, int numExtraNadirBands) throws Exception {
+        final CorrespondenceIndex map = createCorrespondenceIndex();
+        final MisrOp misrOp = new MisrOp();
+        misrOp.setSourceProduct("olciSource", createOlciProduct());
+        misrOp.setSourceProduct("slstrSource", createSlstrProduct(null, numExtraNadirBands));
+        misrOp.setParameter("fillEmptyPixels", fillEmptyPixels);
+        misrOp.setParameter("S3PixelMap", map);
+        misrOp.setParameter("aoPixelMap", map);
+        return misrOp;
+    }
+
+    static void dispose(MisrOp misrOp) {
+        final Product[] sourceProducts = misrOp.getSourceProducts();
+        misrOp.dispose();
+        for (Product sourceProduct : sourceProducts) {
+            sourceProduct.dispose();
+        }
+    }
+
+    /**
+     * @return a square tile rectangle in the centre of the OLCI grid
+     */
+    Rectangle createCentredTileRectangle(int tileSize) {
+        return new Rectangle((olciWidth - tileSize) / 2, (olciHeight - tileSize) / 2, tileSize, tileSize);
+    }
+
+    /**
+     * @return a target tile of the band backed by a new raster, so no tile cache is involved
+     */
+    static Tile createTile(Band band, Rectangle rectangle) {
+        final WritableRaster raster = Raster.createBandedRaster(ImageManager.getDataBufferType(band.getDataType()),
+                                                                 rectangle.width, rectangle.height, 1,
+                                                                 rectangle.getLocation());
+        return new TileImpl(band, raster);
+    }
+}
@@ -0,0 +1,200 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.util.SystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Processes many OLCI/SLSTR pairs in one JVM.
+ * <p>
+ * The input directories are scanned for OLCI L1, SLSTR RBT and MISR products, which are paired by
+ * {@link ProductPairing}. The pairs sharing a MISR product are processed one after the other. The MISR product is
+ * read again for each pair: the MISR tables are streamed and combined with the SLSTR indices of the pair while they
+ * are decoded, so there is nothing which could be shared between pairs with different SLSTR products. Only the
+ * correspondence indices of pairs which were already processed with the same products are taken from the cache
+ * directory, if given. The JVM startup and the initialisation of SNAP are paid once for all pairs. Pairs without
+ * MISR product are collocated.
+ * <p>
+ * Usage: {@code L1cSynBatchRunner -olci <dir> -slstr <dir> -out <dir> [-misr <dir>] [-cache <dir>] [-format <name>] [-report]}
+ */
+public class L1cSynBatchRunner {
+
+    private static final String DEFAULT_FORMAT = "BEAM-DIMAP";
+
+    private final File outputDir;
+    private final String formatName;
+    private final File misrCacheDir;
+    private final boolean writeReports;
+
+    /**
+     * @param outputDir    the directory the L1C products are written to
+     * @param formatName   the name of the output format
+     * @param misrCacheDir the directory the correspondence indices are cached in, may be null
+     * @param writeReports if true, the processing report of each product is written next to it
+     */
+    L1cSynBatchRunner(File outputDir, String formatName, File misrCacheDir, boolean writeReports) {
+        this.outputDir = outputDir;
+        this.formatName = formatName;
+        this.misrCacheDir = misrCacheDir;
+        this.writeReports = writeReports;
+    }
+
+    public static void main(String[] args) {
+        final List<File> olciDirs = new ArrayList<>();
+        final List<File> slstrDirs = new ArrayList<>();
+        final List<File> misrDirs = new ArrayList<>();
+        File outputDir = null;
+        File cacheDir = null;
+        String formatName = DEFAULT_FORMAT;
+        boolean writeReports = false;
+        for (int i = 0; i < args.length; i++) {
+            final String arg = args[i];
+            if (arg.equals("-report")) {
+                writeReports = true;
+            } else if (i + 1 < args.length && arg.equals("-olci")) {
+                olciDirs.add(new File(args[++i]));
+            } else if (i + 1 < args.length && arg.equals("-slstr")) {
+                slstrDirs.add(new File(args[++i]));
+            } else if (i + 1 < args.length && arg.equals("-misr")) {
+                misrDirs.add(new File(args[++i]));
+            } else if (i + 1 < args.length && arg.equals("-out")) {
+                outputDir = new File(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("-cache")) {
+                cacheDir = new File(args[++i]);
+            } else if (i + 1 < args.length && arg.equals("-format")) {
+                formatName = args[++i];
+            } else {
+                printUsage("Unknown argument " + arg);
+                return;
+            }
+        }
+        if (olciDirs.isEmpty() || slstrDirs.isEmpty() || outputDir == null) {
+            printUsage("OLCI and SLSTR input directories and the output directory are required");
+            return;
+        }
+
+        final ProductPairing pairing = new ProductPairing();
+        for (File dir : olciDirs) {
+            pairing.addDirectory(dir);
+        }
+        for (File dir : slstrDirs) {
+            pairing.addDirectory(dir);
+        }
+        for (File dir : misrDirs) {
+            pairing.addDirectory(dir);
+        }
+
+        SystemUtils.init3rdPartyLibs(L1cSynBatchRunner.class);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+        final int failures = new L1cSynBatchRunner(outputDir, formatName, cacheDir, writeReports).run(pairing);
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Processes all pairs of the given pairing. A failing pair is logged and does not stop the processing.
+     *
+     * @return the number of pairs which failed
+     */
+    int run(ProductPairing pairing) {
+        final Map<File, List<ProductPairing.Pair>> groups = pairing.createGroups();
+        for (File file : pairing.getUnpaired()) {
+            SystemUtils.LOG.log(Level.WARNING, String.format("No matching product found for %s", file));
+        }
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            SystemUtils.LOG.log(Level.SEVERE, String.format("Could not create output directory %s", outputDir));
+            return groups.values().stream().mapToInt(List::size).sum();
+        }
+        int failures = 0;
+        for (Map.Entry<File, List<ProductPairing.Pair>> group : groups.entrySet()) {
+            final File misrManifest = getMisrManifest(group.getKey());
+            SystemUtils.LOG.info(String.format("Processing %d pair(s) with MISR product %s", group.getValue().size(),
+                                               misrManifest != null ? group.getKey().getName() : "none"));
+            for (ProductPairing.Pair pair : group.getValue()) {
+                try {
+                    process(pair, misrManifest);
+                } catch (Exception e) {
+                    failures++;
+                    SystemUtils.LOG.log(Level.SEVERE, String.format("Could not process %s: %s", pair, e.getMessage()), e);
+                }
+            }
+        }
+        return failures;
+    }
+
+    private void process(ProductPairing.Pair pair, File misrManifest) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final Product olciProduct = ProductIO.readProduct(getManifest(pair.getOlciProduct()));
+        final Product slstrProduct = ProductIO.readProduct(getManifest(pair.getSlstrProduct()));
+        Product l1cProduct = null;
+        try {
+            if (olciProduct == null || slstrProduct == null) {
+                throw new IOException("No reader found");
+            }
+            final Map<String, Object> parameters = new HashMap<>();
+            parameters.put("useMISR", misrManifest != null);
+            if (misrManifest != null) {
+                parameters.put("misrFile", misrManifest);
+                if (misrCacheDir != null) {
+                    parameters.put("misrCacheDir", misrCacheDir);
+                }
+            }
+            final Map<String, Product> sourceProducts = new HashMap<>();
+            sourceProducts.put("olciProduct", olciProduct);
+            sourceProducts.put("slstrProduct", slstrProduct);
+            if (writeReports) {
+                // the name of the L1C product contains the processing time, so it is not known in advance
+                parameters.put("reportFile", new File(outputDir, olciProduct.getName() + ".l1csyn-report.json"));
+            }
+            l1cProduct = GPF.createProduct("L1CSYN", parameters, sourceProducts);
+            final File targetFile = new File(outputDir, l1cProduct.getName());
+            GPF.writeProduct(l1cProduct, targetFile, formatName, false, ProgressMonitor.NULL);
+            SystemUtils.LOG.info(String.format("Written %s in %d s", targetFile, (System.currentTimeMillis() - startTime) / 1000));
+        } finally {
+            if (l1cProduct != null) {
+                l1cProduct.dispose();
+            }
+            if (olciProduct != null) {
+                olciProduct.dispose();
+            }
+            if (slstrProduct != null) {
+                slstrProduct.dispose();
+            }
+        }
+    }
+
+    // the MISR product is read by CoregistrationSession, which needs the unpacked product
+    static File getMisrManifest(File misrProduct) {
+        if (misrProduct == null) {
+            return null;
+        }
+        final File manifest = new File(misrProduct, "xfdumanifest.xml");
+        if (!manifest.isFile()) {
+            SystemUtils.LOG.log(Level.WARNING, String.format("MISR product %s is not unpacked, it is not used", misrProduct));
+            return null;
+        }
+        return manifest;
+    }
+
+    static File getManifest(File product) {
+        final File manifest = new File(product, "xfdumanifest.xml");
+        return manifest.isFile() ? manifest : product;
+    }
+
+    private static void printUsage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: L1cSynBatchRunner -olci <dir> -slstr <dir> -out <dir> [-misr <dir>] [-cache <dir>] " +
+                                   "[-format <name>] [-report]");
+        System.err.println("  The -olci, -slstr and -misr options may be given several times.");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,242 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.dataio.ProductIO;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.util.SystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Processes L1C SYN jobs placed into a spool directory in one long-running JVM.
+ * <p>
+ * The JVM startup, the initialisation of SNAP and the JIT warm-up are only paid once. The MISR data is kept in a
+ * {@link MisrMemory}, so jobs with the same OLCI, SLSTR and MISR products reuse the SLSTR indices and, for the same
+ * region, the pixel maps of previous jobs.
+ * <p>
+ * A job is a properties file with the extension {@code .job} in the spool directory. The keys {@code olci} and
+ * {@code slstr} give the input products, {@code misr} the optional MISR product, {@code out} the optional output
+ * directory and {@code format} the optional output format. The keys {@code geoRegion}, {@code olciRegexp} and
+ * {@code slstrRegexp} are passed on to L1CSYN, {@code report=true} writes the processing report next to the product.
+ * A job file is moved to the sub-directory {@code running} while it is processed and to {@code done} or
+ * {@code failed} afterwards. Jobs are processed in the order of their file names.
+ * <p>
+ * Every {@code .job} file found is claimed at once, so a job file must be complete when it gets its name. Clients
+ * write it under another name, e.g. {@code <name>.job.tmp}, and rename it to {@code <name>.job} afterwards.
+ * <p>
+ * The memory budget given by {@code -memory} only covers the pixel maps. The sessions of the last two MISR and
+ * SLSTR inputs, with their SLSTR indices and MISR lookup tables, are kept in addition to it.
+ * <p>
+ * Usage: {@code L1cSynDaemon -spool <dir> -out <dir> [-cache <dir>] [-format <name>] [-memory <MB>] [-poll <s>]}
+ */
+public class L1cSynDaemon {
+
+    static final String JOB_EXTENSION = ".job";
+
+    private static final String DEFAULT_FORMAT = "BEAM-DIMAP";
+    private static final int DEFAULT_MEMORY_MB = 2048;
+    private static final int DEFAULT_POLL_SECONDS = 2;
+    private static final int MAX_SESSIONS = 2;
+    private static final String[] PASSED_PARAMETERS = {"geoRegion", "olciRegexp", "slstrRegexp"};
+
+    private final File spoolDir;
+    private final File outputDir;
+    private final String formatName;
+    private final File misrCacheDir;
+    private final MisrMemory misrMemory;
+
+    /**
+     * @param spoolDir     the directory the job files are placed in
+     * @param outputDir    the directory the L1C products are written to, if a job does not give one
+     * @param formatName   the name of the output format, if a job does not give one
+     * @param misrCacheDir the directory the correspondence indices are cached in, may be null
+     * @param memoryBytes  the memory budget of the pixel maps kept between jobs, not including the sessions
+     */
+    L1cSynDaemon(File spoolDir, File outputDir, String formatName, File misrCacheDir, long memoryBytes) {
+        this.spoolDir = spoolDir;
+        this.outputDir = outputDir;
+        this.formatName = formatName;
+        this.misrCacheDir = misrCacheDir;
+        this.misrMemory = new MisrMemory(memoryBytes, MAX_SESSIONS);
+    }
+
+    public static void main(String[] args) {
+        File spoolDir = null;
+        File outputDir = null;
+        File cacheDir = null;
+        String formatName = DEFAULT_FORMAT;
+        int memoryMB = DEFAULT_MEMORY_MB;
+        int pollSeconds = DEFAULT_POLL_SECONDS;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                final String arg = args[i];
+                if (i + 1 < args.length && arg.equals("-spool")) {
+                    spoolDir = new File(args[++i]);
+                } else if (i + 1 < args.length && arg.equals("-out")) {
+                    outputDir = new File(args[++i]);
+                } else if (i + 1 < args.length && arg.equals("-cache")) {
+                    cacheDir = new File(args[++i]);
+                } else if (i + 1 < args.length && arg.equals("-format")) {
+                    formatName = args[++i];
+                } else if (i + 1 < args.length && arg.equals("-memory")) {
+                    memoryMB = Integer.parseInt(args[++i]);
+                } else if (i + 1 < args.length && arg.equals("-poll")) {
+                    pollSeconds = Integer.parseInt(args[++i]);
+                } else {
+                    printUsage("Unknown argument " + arg);
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            printUsage("Invalid number " + e.getMessage());
+            return;
+        }
+        if (spoolDir == null || outputDir == null) {
+            printUsage("The spool directory and the output directory are required");
+            return;
+        }
+
+        SystemUtils.init3rdPartyLibs(L1cSynDaemon.class);
+        GPF.getDefaultInstance().getOperatorSpiRegistry().loadOperatorSpis();
+        final L1cSynDaemon daemon = new L1cSynDaemon(spoolDir, outputDir, formatName, cacheDir, memoryMB * 1024L * 1024L);
+        SystemUtils.LOG.info(String.format("Waiting for jobs in %s", spoolDir));
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (daemon.processPendingJobs() == 0) {
+                    Thread.sleep(pollSeconds * 1000L);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Processes the jobs which are currently in the spool directory.
+     *
+     * @return the number of processed jobs
+     */
+    int processPendingJobs() {
+        final File[] jobFiles = spoolDir.listFiles((dir, name) -> name.endsWith(JOB_EXTENSION));
+        if (jobFiles == null) {
+            SystemUtils.LOG.log(Level.WARNING, String.format("Cannot list spool directory %s", spoolDir));
+            return 0;
+        }
+        Arrays.sort(jobFiles);
+        int count = 0;
+        for (File jobFile : jobFiles) {
+            final File runningFile;
+            try {
+                // the move claims the job, it fails if the file has been removed in the meantime
+                runningFile = moveTo(jobFile, "running");
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, String.format("Could not claim job %s: %s", jobFile, e.getMessage()));
+                continue;
+            }
+            boolean succeeded = false;
+            try {
+                process(readJob(runningFile));
+                succeeded = true;
+            } catch (Exception e) {
+                SystemUtils.LOG.log(Level.SEVERE, String.format("Job %s failed: %s", jobFile.getName(), e.getMessage()), e);
+            }
+            try {
+                moveTo(runningFile, succeeded ? "done" : "failed");
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, String.format("Could not move job %s: %s", runningFile, e.getMessage()));
+            }
+            count++;
+        }
+        return count;
+    }
+
+    static Properties readJob(File jobFile) throws IOException {
+        final Properties job = new Properties();
+        try (InputStream inputStream = Files.newInputStream(jobFile.toPath())) {
+            job.load(inputStream);
+        }
+        if (job.getProperty("olci") == null || job.getProperty("slstr") == null) {
+            throw new IOException("The job must give the olci and slstr products");
+        }
+        return job;
+    }
+
+    private void process(Properties job) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final File jobOutputDir = job.getProperty("out") != null ? new File(job.getProperty("out")) : outputDir;
+        if (!jobOutputDir.isDirectory() && !jobOutputDir.mkdirs()) {
+            throw new IOException("Could not create output directory " + jobOutputDir);
+        }
+        final File misrManifest = job.getProperty("misr") != null
+                ? L1cSynBatchRunner.getMisrManifest(new File(job.getProperty("misr"))) : null;
+        final Product olciProduct = ProductIO.readProduct(L1cSynBatchRunner.getManifest(new File(job.getProperty("olci"))));
+        final Product slstrProduct = ProductIO.readProduct(L1cSynBatchRunner.getManifest(new File(job.getProperty("slstr"))));
+        Product l1cProduct = null;
+        try {
+            if (olciProduct == null || slstrProduct == null) {
+                throw new IOException("No reader found");
+            }
+            final Map<String, Object> parameters = new HashMap<>();
+            parameters.put("useMISR", misrManifest != null);
+            if (misrManifest != null) {
+                parameters.put("misrFile", misrManifest);
+                if (misrCacheDir != null) {
+                    parameters.put("misrCacheDir", misrCacheDir);
+                }
+            }
+            for (String name : PASSED_PARAMETERS) {
+                if (job.getProperty(name) != null) {
+                    parameters.put(name, job.getProperty(name));
+                }
+            }
+            if (Boolean.parseBoolean(job.getProperty("report"))) {
+                parameters.put("reportFile", new File(jobOutputDir, olciProduct.getName() + ".l1csyn-report.json"));
+            }
+            final Map<String, Product> sourceProducts = new HashMap<>();
+            sourceProducts.put("olciProduct", olciProduct);
+            sourceProducts.put("slstrProduct", slstrProduct);
+            final L1cSynOp operator = (L1cSynOp) new L1cSynOp.Spi().createOperator(parameters, sourceProducts);
+            operator.setMisrMemory(misrMemory);
+            l1cProduct = operator.getTargetProduct();
+            final File targetFile = new File(jobOutputDir, l1cProduct.getName());
+            GPF.writeProduct(l1cProduct, targetFile, job.getProperty("format", formatName), false, ProgressMonitor.NULL);
+            SystemUtils.LOG.info(String.format("Written %s in %d s", targetFile, (System.currentTimeMillis() - startTime) / 1000));
+        } finally {
+            if (l1cProduct != null) {
+                l1cProduct.dispose();
+            }
+            if (olciProduct != null) {
+                olciProduct.dispose();
+            }
+            if (slstrProduct != null) {
+                slstrProduct.dispose();
+            }
+        }
+    }
+
+    private File moveTo(File jobFile, String dirName) throws IOException {
+        final File dir = new File(spoolDir, dirName);
+        Files.createDirectories(dir.toPath());
+        final File target = new File(dir, jobFile.getName());
+        Files.move(jobFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    private static void printUsage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: L1cSynDaemon -spool <dir> -out <dir> [-cache <dir>] [-format <name>] [-memory <MB>] [-poll <s>]");
+        System.err.println("  Jobs are properties files with the extension " + JOB_EXTENSION + " and the keys olci, slstr and");
+        System.err.println("  optionally misr, out, format, geoRegion, olciRegexp, slstrRegexp and report.");
+        System.exit(2);
+    }
+}
@@ -1,6 +1,12 @@
 package org.esa.s3tbx.l1csyn.op;
 
+import com.bc.ceres.core.ProgressMonitor;
 import org.apache.commons.lang.ArrayUtils;
+import org.esa.s3tbx.l1csyn.coreg.BufferStorage;
+import org.esa.s3tbx.l1csyn.coreg.CoregistrationSession;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndexCache;
+import org.esa.s3tbx.l1csyn.coreg.SlstrMisrTransform;
 import org.esa.snap.core.dataio.geocoding.ComponentGeoCoding;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.MetadataElement;
@@ -14,16 +20,21 @@ import org.esa.snap.core.gpf.annotations.OperatorMetadata;
 import org.esa.snap.core.gpf.annotations.Parameter;
 import org.esa.snap.core.gpf.annotations.SourceProduct;
 import org.esa.snap.core.gpf.annotations.TargetProduct;
+import org.esa.snap.core.gpf.common.SubsetOp;
+import org.esa.snap.core.util.SystemUtils;
 import org.geotools.data.shapefile.ShapefileDataStore;
 import org.geotools.data.simple.SimpleFeatureIterator;
 import org.geotools.data.store.ContentFeatureCollection;
 import org.geotools.data.store.ContentFeatureSource;
+import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
 import org.opengis.feature.simple.SimpleFeature;
-import ucar.ma2.InvalidRangeException;
 
+import java.awt.Rectangle;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -31,9 +42,16 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -46,10 +64,12 @@ import java.util.regex.Pattern;
         version = "3.0")
 public class L1cSynOp extends Operator {
 
-    private static final long ALLOWED_TIME_DIFF = 200L;
+    static final long ALLOWED_TIME_DIFF = 200L;
     private static final boolean USE_FULL_MISR = true;
     private static final boolean USE_ORPHAN = true;
     private static final boolean FILL_EMPTY_PIXELS = true;
+    // how often the progress monitor is checked for cancellation while the MISR maps are derived
+    private static final long CANCEL_POLL_MILLIS = 200L;
 
     @SourceProduct(label = "OLCI Product", description = "OLCI L1 ERR or EFR source product")
     private Product olciProduct;
@@ -72,6 +92,50 @@ public class L1cSynOp extends Operator {
     @Parameter(label = "MISR Product", description = "Optional MISR file which may be used for co-registration of OLCI and SLSTR products")
     private File misrFile;
 
+    @Parameter(label = "MISR cache directory",
+            description = "Optional directory for caching the pixel maps derived from the MISR product. " +
+                    "The maps are reused when the same OLCI, SLSTR and MISR products are processed again.")
+    private File misrCacheDir;
+
+    @Parameter(label = "Number of MISR threads",
+            description = "Number of threads used for deriving the pixel maps from the MISR product. " +
+                    "If set to 0, all available processors are used.",
+            defaultValue = "2", interval = "[0,*)")
+    private int misrThreads;
+
+    @Parameter(label = "MISR chunk size",
+            description = "Number of lines (N_LINE_OLC) which are read at once from the MISR product. " +
+                    "Smaller values reduce the memory needed for reading the MISR product.",
+            defaultValue = "2048", interval = "[1,*)")
+    private int misrChunkLines;
+
+    @Parameter(label = "Number of MISR camera threads",
+            description = "Number of OLCI cameras which are decoded concurrently from the MISR product when a pixel " +
+                    "map is derived. Each thread reads one chunk of the MISR product at a time. " +
+                    "If set to 0, all available processors are used.",
+            defaultValue = "1", interval = "[0,*)")
+    private int misrCameraThreads;
+
+    @Parameter(label = "MISR map storage",
+            description = "Where the pixel maps and the orphan data are held: on the Java heap, in direct buffers " +
+                    "outside of the heap or in memory-mapped scratch files. Outside of the heap they do not add to " +
+                    "the heap size and the garbage collection.",
+            valueSet = {BufferStorage.HEAP_NAME, BufferStorage.DIRECT_NAME, BufferStorage.MAPPED_NAME},
+            defaultValue = BufferStorage.HEAP_NAME)
+    private String misrStorage;
+
+    @Parameter(label = "Scratch directory",
+            description = "Optional directory for the scratch files of the memory-mapped MISR map storage. " +
+                    "If not given, the temporary directory is used.")
+    private File scratchDir;
+
+    @Parameter(label = "Processing report file",
+            description = "Optional JSON file the processing report is written to when the processing is finished. " +
+                    "The report contains the time and memory needed by the processing stages and the number of " +
+                    "co-registered pixels. The metrics of the initialization, which includes the derivation of the " +
+                    "MISR maps, are added to the metadata element InitializationReport of the product.")
+    private File reportFile;
+
     @Parameter(label = "Reprojection CRS",
             description = "The CRS used for the reprojection. If set to None or left empty, no reprojection will be performed. If MISR file is specified this setting will be neglected.",
             defaultValue = "EPSG:4326")
@@ -83,6 +147,13 @@ public class L1cSynOp extends Operator {
             defaultValue = "Nearest")
     private String upsampling;
 
+    @Parameter(label = "Collocate without resampling",
+            description = "If set to true and the MISR product is not used, the SLSTR bands are collocated directly " +
+                    "from their own grids onto the OLCI grid by nearest neighbour, only for the tiles which are " +
+                    "computed. No resampled SLSTR product is created. The resampling upsampling method is not used then.",
+            defaultValue = "false")
+    private boolean directCollocation;
+
     @Parameter(label = "OLCI raster data",
             description = "Predefined regular expressions for selection of OLCI bands in the output product. Multiple selection is possible.",
             valueSet = {"All", "Oa.._radiance", "FWHM_band_.*", "lambda0_band_.*", "solar_flux_band_.*", "quality_flags.*",
@@ -131,8 +202,55 @@ public class L1cSynOp extends Operator {
     //        defaultValue = "true")
     //private boolean fullMisr;
 
+    private CorrespondenceIndexCache misrCache;
+    private MisrMemory misrMemory;
+    // the cache key of the maps, only computed if they are cached on disk or kept in memory
+    private String misrCacheKey;
+    private BufferStorage bufferStorage;
+    // the OLCI pixel region of the geoRegion if it is applied during the misregistration, otherwise null
+    private Rectangle olciRegion;
+    private final ProcessingReport processingReport = new ProcessingReport();
+    private MapProgress mapProgress = new MapProgress(ProgressMonitor.NULL, processingReport);
+
+    /**
+     * Sets the monitor which receives the progress of the derivation of the MISR pixel maps during the
+     * initialization. If it is cancelled, the derivation is stopped and the initialization fails with an
+     * {@link OperatorException}. Must be set before the target product is requested.
+     */
+    public void setProgressMonitor(ProgressMonitor pm) {
+        mapProgress = new MapProgress(pm != null ? pm : ProgressMonitor.NULL, processingReport);
+    }
+
+    /**
+     * Sets the memory keeping the MISR data between runs. Must be set before the target product is requested.
+     */
+    void setMisrMemory(MisrMemory misrMemory) {
+        this.misrMemory = misrMemory;
+    }
+
     @Override
     public void initialize() throws OperatorException {
+        try (ProcessingReport.Stage ignored = processingReport.start("initialize", ProcessingReport.ALL_BAND_TYPES)) {
+            createL1cTarget();
+        }
+        // the metrics of the tile computation are only known when the processing is finished, after the header of
+        // the product has been written, they are only contained in the JSON report written by dispose()
+        l1cTarget.getMetadataRoot().addElement(processingReport.createMetadataElement());
+    }
+
+    @Override
+    public void dispose() {
+        if (reportFile != null) {
+            try {
+                processingReport.writeJson(reportFile, l1cTarget != null ? l1cTarget.getName() : null);
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, String.format("Could not write processing report %s: %s", reportFile, e.getMessage()));
+            }
+        }
+        super.dispose();
+    }
+
+    private void createL1cTarget() {
         if (!isValidOlciProduct(olciProduct)) {
             throw new OperatorException("OLCI product is not valid");
         }
@@ -154,26 +272,46 @@ public class L1cSynOp extends Operator {
 
         if (useMISR) {
             ensureValidMISRFile(misrFile);
+            if (geoRegion != null) {
+                // the maps and the misregistered product are only created for the region
+                olciRegion = computeOlciRegion(geoRegion);
+            }
             try {
                 HashMap<String, Object> misrParams = createMisrParamsMap();
 
                 HashMap<String, Product> misrSourceProductMap = new HashMap<>();
-                misrSourceProductMap.put("olciSource", olciProduct);
+                if (olciRegion != null) {
+                    misrSourceProductMap.put("olciSource", GPF.createProduct("Subset", getSubsetParameters(olciRegion), olciProduct));
+                } else {
+                    misrSourceProductMap.put("olciSource", olciProduct);
+                }
                 misrSourceProductMap.put("slstrSource", slstrProduct);
 
-                collocatedTarget = GPF.createProduct("Misregister", misrParams, misrSourceProductMap);
-            } catch (InvalidRangeException e1) {
-                throw new OperatorException("Misregistration failed. InvalidRangeException", e1);
-            } catch (IOException e2) {
-                throw new OperatorException("Misregistration failed. I/O Exception ", e2);
+                try (ProcessingReport.Stage ignored = processingReport.start("misregister", ProcessingReport.ALL_BAND_TYPES)) {
+                    collocatedTarget = GPF.createProduct("Misregister", misrParams, misrSourceProductMap);
+                }
+            } catch (IOException e) {
+                throw new OperatorException("Misregistration failed. I/O Exception ", e);
             }
 
         } else {
-            Product slstrInput = GPF.createProduct("Resample", getSlstrResampleParams(slstrProduct, upsampling), slstrProduct);
-            HashMap<String, Product> sourceProductMap = new HashMap<>();
-            sourceProductMap.put("masterProduct", olciProduct);
-            sourceProductMap.put("slaveProduct", slstrInput);
-            collocatedTarget = GPF.createProduct("Collocate", getCollocateParams(), sourceProductMap);
+            try (ProcessingReport.Stage ignored = processingReport.start("collocate", ProcessingReport.ALL_BAND_TYPES)) {
+                // only the selected rasters are resampled and collocated
+                final Product slstrSelection = selectRasters(slstrProduct, getSlstrPatterns());
+                final Product olciSelection = selectRasters(olciProduct, getOlciPatterns());
+                HashMap<String, Product> sourceProductMap = new HashMap<>();
+                if (directCollocation) {
+                    // the SLSTR bands are sampled per OLCI tile from their own grids
+                    sourceProductMap.put("olciSource", olciSelection);
+                    sourceProductMap.put("slstrSource", slstrSelection);
+                    collocatedTarget = GPF.createProduct("L1cSynCollocate", getDirectCollocationParams(), sourceProductMap);
+                } else {
+                    Product slstrInput = GPF.createProduct("Resample", getSlstrResampleParams(slstrSelection, upsampling), slstrSelection);
+                    sourceProductMap.put("masterProduct", olciSelection);
+                    sourceProductMap.put("slaveProduct", slstrInput);
+                    collocatedTarget = GPF.createProduct("Collocate", getCollocateParams(), sourceProductMap);
+                }
+            }
         }
 
         if (reprojectionCRS != null && !reprojectionCRS.equalsIgnoreCase("none") && !reprojectionCRS.equals("") && !stayOnOlciGrid && misrFile == null) {
@@ -185,7 +323,7 @@ public class L1cSynOp extends Operator {
         ProductData.UTC startDate = startEndDateMap.get("startDate");
         ProductData.UTC endDate = startEndDateMap.get("endDate");
 
-        if (geoRegion != null) {
+        if (geoRegion != null && olciRegion == null) {
             l1cTarget = GPF.createProduct("Subset", getSubsetParameters(geoRegion), l1cTarget);
         }
 
@@ -196,77 +334,34 @@ public class L1cSynOp extends Operator {
         l1cTarget.setEndTime(endDate);
         l1cTarget.setName(L1cSynUtils.getSynName(slstrProduct, olciProduct));
         removeOrphanBands(l1cTarget);
-        if (slstrRegexp == null || slstrRegexp.equals("")) {
-            updateBands(slstrProduct, l1cTarget, bandsSlstr);
-        } else {
-            updateBands(slstrProduct, l1cTarget, readRegExp(slstrRegexp));
-        }
-        if (olciRegexp == null || olciRegexp.equals("")) {
-            updateBands(olciProduct, l1cTarget, bandsOlci);
-        } else {
-            updateBands(olciProduct, l1cTarget, readRegExp(olciRegexp));
-        }
+        // removes the rasters which were only kept because selected rasters depend on them
+        updateBands(slstrProduct, l1cTarget, getSlstrPatterns());
+        updateBands(olciProduct, l1cTarget, getOlciPatterns());
         l1cTarget.setAutoGrouping(olciProduct.getAutoGrouping().toString() + slstrProduct.getAutoGrouping().toString());
         l1cTarget.setDescription("SENTINEL-3 SYN Level 1C Product");
     }
 
-    private HashMap<String, Object> createMisrParamsMap() throws InvalidRangeException, IOException {
-
-        // Better not using more then 2 threads. More caused issues
-        int parallelThreads = 2;
-        final ExecutorService executorService = Executors.newFixedThreadPool(parallelThreads);
-
-        final HashMap<String, Map<int[], int[]>> misrMap = new HashMap<>();
-        if (!USE_FULL_MISR) {
-            executorService.submit(createMapGenerationRunnable(misrMap, "S3"));
-            executorService.submit(createMapGenerationRunnable(misrMap, "ao"));
+    private HashMap<String, Object> createMisrParamsMap() throws IOException {
+        bufferStorage = BufferStorage.forName(misrStorage, scratchDir);
+        final File slstrDir = slstrProduct.getFileLocation().getParentFile();
+        final int cameraThreads = misrCameraThreads > 0 ? misrCameraThreads : Runtime.getRuntime().availableProcessors();
+        final CoregistrationSession session;
+        if (misrMemory != null) {
+            session = misrMemory.getSession(misrFile, slstrDir, misrChunkLines, bufferStorage, cameraThreads);
         } else {
-
-            String[] slstrTargetBands;
-            if (slstrRegexp == null || slstrRegexp.equals("")) {
-                slstrTargetBands = getSlstrBands(slstrProduct, bandsSlstr);
-            } else {
-                slstrTargetBands = getSlstrBands(slstrProduct, readRegExp(slstrRegexp));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S1")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S1"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S2")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S2"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S3")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S3"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S4")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S4"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S5")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S5"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "S6")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "S6"));
-            }
-
-            if (mapNeeded(slstrTargetBands, "ao")) {
-                executorService.submit(createMapGenerationRunnable(misrMap, "ao"));
-            }
-
+            session = new CoregistrationSession(misrFile, slstrDir, misrChunkLines, bufferStorage, cameraThreads);
         }
-        executorService.shutdown();
-        while (true) {
-            try {
-                if (executorService.awaitTermination(2, TimeUnit.SECONDS)) {
-                    break;
-                }
-            } catch (InterruptedException e) {
-                throw new OperatorException("Misregistration failed.", e);
-            }
+        if (misrCacheDir != null || misrMemory != null) {
+            misrCacheKey = CorrespondenceIndexCache.createKey(misrFile, slstrDir, olciProduct.getSceneRasterWidth(),
+                                                              olciProduct.getSceneRasterHeight(), olciRegion);
+        }
+        if (misrCacheDir != null) {
+            misrCache = new CorrespondenceIndexCache(misrCacheDir, misrCacheKey);
+        }
+
+        final HashMap<String, CorrespondenceIndex> misrMap;
+        try (ProcessingReport.Stage ignored = processingReport.start("misrMaps", ProcessingReport.ALL_BAND_TYPES)) {
+            misrMap = new HashMap<>(generateMaps(session, getRequiredBandTypes()));
         }
 
         // currently we use the 'ao' data also for bo and co
@@ -301,40 +396,180 @@ public class L1cSynOp extends Operator {
         HashMap<String, Object> misrParams = new HashMap<>(misrMap);
         misrParams.put("fillEmptyPixels", FILL_EMPTY_PIXELS);
         misrParams.put("orphan", USE_ORPHAN);
+        misrParams.put("processingReport", processingReport);
+        misrParams.put("bufferStorage", bufferStorage);
+        if (!RasterSelection.isAll(getOlciPatterns())) {
+            misrParams.put("olciRasterNames", RasterSelection.getRequiredNames(olciProduct, getOlciPatterns()).toArray(new String[0]));
+        }
+        if (!RasterSelection.isAll(getSlstrPatterns())) {
+            misrParams.put("slstrRasterNames", RasterSelection.getRequiredNames(slstrProduct, getSlstrPatterns()).toArray(new String[0]));
+        }
 
         return misrParams;
     }
 
 
-    private Runnable createMapGenerationRunnable(HashMap<String, Map<int[], int[]>> misrMap, final String bandType) {
-        return () -> {
+    private List<String> getRequiredBandTypes() {
+        final List<String> bandTypes = new ArrayList<>();
+        if (!USE_FULL_MISR) {
+            bandTypes.add("S3");
+            bandTypes.add("ao");
+        } else {
+            String[] slstrTargetBands = RasterSelection.getSelectedNames(slstrProduct, getSlstrPatterns());
+            for (String bandType : new String[]{"S1", "S2", "S3", "S4", "S5", "S6", "ao"}) {
+                if (mapNeeded(slstrTargetBands, bandType)) {
+                    bandTypes.add(bandType);
+                }
+            }
+        }
+        return bandTypes;
+    }
+
+    /**
+     * Generates the pixel and orphan maps of the given band types concurrently. If the generation for one band type
+     * fails, the remaining ones are cancelled and the first failure is thrown. The same happens if the progress
+     * monitor is cancelled. The workers have stopped when this method returns.
+     */
+    private Map<String, CorrespondenceIndex> generateMaps(CoregistrationSession session, List<String> bandTypes) throws IOException {
+        final Map<String, CorrespondenceIndex> misrMap = new ConcurrentHashMap<>();
+        if (bandTypes.isEmpty()) {
+            return misrMap;
+        }
+        final int numThreads = Math.min(bandTypes.size(), misrThreads > 0 ? misrThreads : Runtime.getRuntime().availableProcessors());
+        // the worker threads never keep the JVM alive, e.g. if the processing is aborted
+        final ExecutorService executorService = Executors.newFixedThreadPool(numThreads, runnable -> {
+            final Thread thread = new Thread(runnable, "MISR maps");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final CompletionService<String> completionService = new ExecutorCompletionService<>(executorService);
+        final List<Future<String>> futures = new ArrayList<>();
+        try {
+            for (String bandType : bandTypes) {
+                futures.add(completionService.submit(() -> {
+                    setMapsAsParameter(session, misrMap, bandType);
+                    return bandType;
+                }));
+            }
+            mapProgress.begin(bandTypes.size());
+            for (int i = 0; i < futures.size(); i++) {
+                Future<String> completed;
+                while ((completed = completionService.poll(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                    if (mapProgress.isCanceled()) {
+                        throw new OperatorException("Derivation of the MISR pixel maps has been cancelled.");
+                    }
+                }
+                try {
+                    completed.get();
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw new OperatorException("Misregistration failed.", cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Misregistration failed.", e);
+        } finally {
+            // interrupts the workers, they stop before reading the next chunk of the MISR product
+            for (Future<String> future : futures) {
+                future.cancel(true);
+            }
+            executorService.shutdownNow();
+            awaitTermination(executorService);
+            mapProgress.done();
+        }
+        return misrMap;
+    }
+
+    // waits for the workers to stop after a failure or a cancellation, so none of them still uses the session
+    private static void awaitTermination(ExecutorService executorService) {
+        boolean interrupted = false;
+        while (true) {
             try {
-                setMapsAsParameter(misrMap, bandType);
-            } catch (InvalidRangeException e1) {
-                throw new OperatorException("Misregistration failed. InvalidRangeException", e1);
-            } catch (IOException e2) {
-                throw new OperatorException("Misregistration failed. I/O Exception ", e2);
+                if (executorService.awaitTermination(CANCEL_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
             }
-        };
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    private void setMapsAsParameter(HashMap<String, Map<int[], int[]>> misrMap, String bandType) throws InvalidRangeException, IOException {
-        misrMap.put(bandType + "PixelMap", getPixelMap(bandType));
-        misrMap.put(bandType + "OrphanMap", getOrphanMap(bandType));
+    private void setMapsAsParameter(CoregistrationSession session, Map<String, CorrespondenceIndex> misrMap,
+                                    String bandType) throws IOException {
+        try {
+            misrMap.put(bandType + "PixelMap", getPixelMap(session, bandType));
+            misrMap.put(bandType + "OrphanMap", getOrphanMap(session, bandType));
+        } finally {
+            // the session may be kept by the MISR memory, so the data of a failed band type must not stay in it
+            session.release(bandType);
+        }
     }
 
-    private Map<int[], int[]> getOrphanMap(String bandType) throws InvalidRangeException, IOException {
-        Map<int[], int[]> mapOrphanSlstr = new SlstrMisrTransform(olciProduct, slstrProduct, misrFile, bandType).getOrphanOlciMap();
-        final Map<int[], int[]> s1Orphans = MapToWrapedArrayFactory.createWrappedArray(mapOrphanSlstr);
-        mapOrphanSlstr.clear();
-        return s1Orphans;
+    private CorrespondenceIndex getOrphanMap(CoregistrationSession session, String bandType) throws IOException {
+        final String mapName = bandType + "OrphanMap";
+        try (ProcessingReport.Stage ignored = processingReport.start("orphanMap", bandType)) {
+            CorrespondenceIndex orphanMap = loadCachedMap(mapName);
+            if (orphanMap == null) {
+                orphanMap = createTransform(session, bandType).getOrphanOlciMap();
+                storeCachedMap(mapName, orphanMap);
+            }
+            mapProgress.mapDone(mapName);
+            return orphanMap;
+        }
+    }
+
+    private CorrespondenceIndex getPixelMap(CoregistrationSession session, String bandType) throws IOException {
+        final String mapName = bandType + "PixelMap";
+        try (ProcessingReport.Stage ignored = processingReport.start("pixelMap", bandType)) {
+            CorrespondenceIndex pixelMap = loadCachedMap(mapName);
+            if (pixelMap == null) {
+                pixelMap = createTransform(session, bandType).getSlstrOlciMap();
+                storeCachedMap(mapName, pixelMap);
+            }
+            mapProgress.mapDone(mapName);
+            return pixelMap;
+        }
+    }
+
+    private SlstrMisrTransform createTransform(CoregistrationSession session, String bandType) {
+        final Band olciBand = olciProduct.getBand("Oa17_radiance");
+        final Band slstrBand = slstrProduct.getBand("S3_radiance_" + SlstrMisrTransform.getViewType(bandType));
+        final Rectangle region = olciRegion != null ? olciRegion : new Rectangle(olciBand.getRasterWidth(), olciBand.getRasterHeight());
+        return new SlstrMisrTransform(session, bandType, region, slstrBand.getRasterWidth(), slstrBand.getRasterHeight(),
+                                      mapProgress);
     }
 
-    private Map<int[], int[]> getPixelMap(String bandType) throws InvalidRangeException, IOException {
-        Map<int[], int[]> mapOlciSlstr = new SlstrMisrTransform(olciProduct, slstrProduct, misrFile, bandType).getSlstrOlciMap();
-        final Map<int[], int[]> pixelMap = MapToWrapedArrayFactory.createWrappedArray(mapOlciSlstr);
-        mapOlciSlstr.clear();
-        return pixelMap;
+    private CorrespondenceIndex loadCachedMap(String mapName) {
+        CorrespondenceIndex map = misrMemory != null ? misrMemory.getMap(misrCacheKey, mapName) : null;
+        if (map == null && misrCache != null) {
+            map = misrCache.load(mapName, bufferStorage);
+            if (map != null && misrMemory != null) {
+                misrMemory.putMap(misrCacheKey, mapName, map);
+            }
+        }
+        return map;
+    }
+
+    private void storeCachedMap(String mapName, CorrespondenceIndex map) {
+        if (misrMemory != null) {
+            misrMemory.putMap(misrCacheKey, mapName, map);
+        }
+        if (misrCache != null) {
+            try {
+                misrCache.store(mapName, map);
+            } catch (IOException e) {
+                SystemUtils.LOG.log(Level.WARNING, String.format("Could not cache %s: %s", mapName, e.getMessage()));
+            }
+        }
     }
 
     private String[] readRegExp(String regExp) {
@@ -342,22 +577,25 @@ public class L1cSynOp extends Operator {
         return regExp.split(",");
     }
 
-    private String[] getSlstrBands(Product inputProduct, String[] bandsList) {
-        String[] bandNames = inputProduct.getBandNames();
-        String[] tiePointGridNames = inputProduct.getTiePointGridNames();
-        Object[] tiePointBandNames = ArrayUtils.addAll(bandNames, tiePointGridNames);
-        if (!Arrays.asList(bandsList).contains("All")) {
-            Pattern pattern = Pattern.compile("\\b(" + String.join("|", bandsList) + ")\\b");
-            for (String bandName : (String[]) tiePointBandNames) {
-                Matcher matcher = pattern.matcher(bandName);
-                if (!matcher.matches()) {
-                    tiePointBandNames = ArrayUtils.removeElement(tiePointBandNames, bandName);
-                }
-            }
-            return (String[]) tiePointBandNames;
-        } else {
-            return (String[]) tiePointBandNames;
+    private String[] getOlciPatterns() {
+        return olciRegexp == null || olciRegexp.equals("") ? bandsOlci : readRegExp(olciRegexp);
+    }
+
+    private String[] getSlstrPatterns() {
+        return slstrRegexp == null || slstrRegexp.equals("") ? bandsSlstr : readRegExp(slstrRegexp);
+    }
+
+    // a subset containing the selected rasters and the rasters they depend on
+    private Product selectRasters(Product product, String[] patterns) {
+        if (RasterSelection.isAll(patterns)) {
+            return product;
         }
+        final Set<String> names = RasterSelection.getRequiredNames(product, patterns);
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("bandNames", RasterSelection.getBandNames(product, names));
+        params.put("tiePointGridNames", RasterSelection.getTiePointGridNames(product, names));
+        params.put("copyMetadata", true);
+        return GPF.createProduct("Subset", params, product);
     }
 
     private boolean mapNeeded(String[] bandsList, String key) {
@@ -425,6 +663,28 @@ public class L1cSynOp extends Operator {
         return params;
     }
 
+    private Map<String, Object> getSubsetParameters(Rectangle region) {
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("region", region);
+        params.put("copyMetadata", true);
+        return params;
+    }
+
+    // the same pixel region as the one of the Subset operator for the geoRegion
+    private Rectangle computeOlciRegion(String geoRegion) {
+        final Geometry geometry;
+        try {
+            geometry = new WKTReader().read(geoRegion);
+        } catch (ParseException e) {
+            throw new OperatorException("The geoRegion is not a valid WKT geometry: " + e.getMessage(), e);
+        }
+        final Rectangle region = SubsetOp.computePixelRegion(olciProduct, geometry, 0);
+        if (region.isEmpty()) {
+            throw new OperatorException("The geoRegion does not intersect the OLCI product");
+        }
+        return region;
+    }
+
     protected Map<String, Object> getCollocateParams() {
         HashMap<String, Object> params = new HashMap<>();
         params.put("targetProductType", "S3_L1C_SYN");
@@ -434,6 +694,12 @@ public class L1cSynOp extends Operator {
         return params;
     }
 
+    private Map<String, Object> getDirectCollocationParams() {
+        HashMap<String, Object> params = new HashMap<>();
+        params.put("processingReport", processingReport);
+        return params;
+    }
+
     protected HashMap<String, Object> getSlstrResampleParams(Product toResample, String upsamplingMethod) {
         HashMap<String, Object> params = new HashMap<>();
         params.put("targetWidth", toResample.getSceneRasterWidth());
@@ -448,13 +714,21 @@ public class L1cSynOp extends Operator {
     private void checkDate(Product slstrSource, Product olciSource) throws OperatorException {
         long slstrTime = slstrSource.getStartTime().getAsDate().getTime();
         long olciTime = olciSource.getEndTime().getAsDate().getTime();
-        long diff = slstrTime - olciTime;
-        long diffInSeconds = diff / 1000L;
-        if (diffInSeconds > ALLOWED_TIME_DIFF) {
+        if (!isTimeDifferenceAllowed(slstrTime, olciTime)) {
+            long diffInSeconds = (slstrTime - olciTime) / 1000L;
             throw new OperatorException("The SLSTR and OLCI products differ more than" + String.format("%d", diffInSeconds) + ". Please check input products");
         }
     }
 
+    /**
+     * @param slstrStartTime the start time of the SLSTR product in milliseconds
+     * @param olciEndTime    the end time of the OLCI product in milliseconds
+     * @return true if the products are close enough in time to be processed together
+     */
+    static boolean isTimeDifferenceAllowed(long slstrStartTime, long olciEndTime) {
+        return (slstrStartTime - olciEndTime) / 1000L <= ALLOWED_TIME_DIFF;
+    }
+
     private void checkGeocoding(Product slstrSource, Product olciSource) {
         if (!(olciSource.getSceneGeoCoding() instanceof ComponentGeoCoding)) {
             throw new OperatorException("OLCI product geocoding is not set to pixel-based geo-coding. Please check your SNAP configuration");
@@ -522,15 +796,6 @@ public class L1cSynOp extends Operator {
     //  Below is the code which is not used
     // ********************
 
-    @SuppressWarnings("unused")
-    private void dumpMemoryUsage(String label) {
-        long totalMem = Runtime.getRuntime().totalMemory();
-        long usedMem = totalMem - Runtime.getRuntime().freeMemory();
-        float mbFactor = 1.0F / (1024.0F * 1024.0F);
-        System.out.printf("%s: Memory usage %.1f/%.1f (%.1f)%n", label,
-                          usedMem * mbFactor, totalMem * mbFactor, Runtime.getRuntime().maxMemory() * mbFactor);
-    }
-
     // calculates offset between SLSTR and OLCI products
     @SuppressWarnings("unused")
     private int getSLSLTROffset() throws IOException {
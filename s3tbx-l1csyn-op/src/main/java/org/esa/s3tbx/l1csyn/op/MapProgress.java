@@ -0,0 +1,58 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s3tbx.l1csyn.coreg.StageTimer;
+
+/**
+ * Reports the derivation of the MISR pixel and orphan maps to a {@link ProgressMonitor}.
+ * <p>
+ * One unit of work is a pixel or an orphan map of one band type. The stages the maps are derived in are shown as
+ * sub-task and passed on to the delegate timer. The maps are derived concurrently, so the calls to the monitor are
+ * synchronized on it.
+ */
+class MapProgress implements StageTimer {
+
+    private final ProgressMonitor pm;
+    private final StageTimer delegate;
+
+    MapProgress(ProgressMonitor pm, StageTimer delegate) {
+        this.pm = pm;
+        this.delegate = delegate;
+    }
+
+    /**
+     * @param numBandTypes the number of band types whose pixel and orphan maps are derived
+     */
+    void begin(int numBandTypes) {
+        synchronized (pm) {
+            pm.beginTask("Deriving MISR pixel maps", 2 * numBandTypes);
+        }
+    }
+
+    void mapDone(String mapName) {
+        synchronized (pm) {
+            pm.setSubTaskName(mapName + " done");
+            pm.worked(1);
+        }
+    }
+
+    void done() {
+        synchronized (pm) {
+            pm.done();
+        }
+    }
+
+    boolean isCanceled() {
+        synchronized (pm) {
+            return pm.isCanceled();
+        }
+    }
+
+    @Override
+    public Stage start(String stage, String bandType) {
+        synchronized (pm) {
+            pm.setSubTaskName(String.format("Band type %s: %s", bandType, stage));
+        }
+        return delegate.start(stage, bandType);
+    }
+}
@@ -0,0 +1,99 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.BufferStorage;
+import org.esa.s3tbx.l1csyn.coreg.CoregistrationSession;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the MISR data of previous runs of {@link L1cSynOp} in memory, so runs with the same inputs do not need to
+ * read or derive it again.
+ * <p>
+ * The pixel and orphan maps are kept under their cache key, see
+ * {@link org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndexCache#createKey}. The co-registration sessions are kept per
+ * MISR and SLSTR product, so the SLSTR indices are only read once, even if the maps of another region are derived.
+ * The least recently used entries are dropped if the memory budget of the maps or the number of sessions is exceeded.
+ */
+class MisrMemory {
+
+    private final long maxMapBytes;
+    private final int maxSessions;
+    private final LinkedHashMap<String, CorrespondenceIndex> maps;
+    private final LinkedHashMap<String, CoregistrationSession> sessions;
+    private long usedMapBytes;
+
+    /**
+     * @param maxMapBytes the memory budget of the maps in bytes
+     * @param maxSessions the number of co-registration sessions which are kept
+     */
+    MisrMemory(long maxMapBytes, int maxSessions) {
+        this.maxMapBytes = maxMapBytes;
+        this.maxSessions = maxSessions;
+        this.maps = new LinkedHashMap<>(16, 0.75f, true);
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the map or {@code null} if it is not kept
+     */
+    synchronized CorrespondenceIndex getMap(String cacheKey, String mapName) {
+        return maps.get(cacheKey + "/" + mapName);
+    }
+
+    synchronized void putMap(String cacheKey, String mapName, CorrespondenceIndex map) {
+        final String key = cacheKey + "/" + mapName;
+        final CorrespondenceIndex previous = maps.put(key, map);
+        if (previous != null) {
+            usedMapBytes -= getSizeInBytes(previous);
+        }
+        usedMapBytes += getSizeInBytes(map);
+        final Iterator<Map.Entry<String, CorrespondenceIndex>> iterator = maps.entrySet().iterator();
+        while (usedMapBytes > maxMapBytes && iterator.hasNext()) {
+            final Map.Entry<String, CorrespondenceIndex> entry = iterator.next();
+            // the map put last is kept, even if it exceeds the budget on its own
+            if (!entry.getKey().equals(key)) {
+                usedMapBytes -= getSizeInBytes(entry.getValue());
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the session of the given products, which is created if it is not kept
+     */
+    synchronized CoregistrationSession getSession(File misrManifest, File slstrDir, int chunkLines, BufferStorage storage,
+                                                  int cameraThreads) {
+        final String key = String.format("%s|%s|%d|%s|%d", misrManifest.getAbsolutePath(), slstrDir.getAbsolutePath(),
+                                         chunkLines, storage.getName(), cameraThreads);
+        CoregistrationSession session = sessions.get(key);
+        if (session == null) {
+            session = new CoregistrationSession(misrManifest, slstrDir, chunkLines, storage, cameraThreads);
+            sessions.put(key, session);
+            final Iterator<String> iterator = sessions.keySet().iterator();
+            while (sessions.size() > maxSessions && iterator.hasNext()) {
+                if (!iterator.next().equals(key)) {
+                    iterator.remove();
+                }
+            }
+        }
+        return session;
+    }
+
+    synchronized long getUsedMapBytes() {
+        return usedMapBytes;
+    }
+
+    synchronized void clear() {
+        maps.clear();
+        sessions.clear();
+        usedMapBytes = 0;
+    }
+
+    private static long getSizeInBytes(CorrespondenceIndex map) {
+        return 2L * map.getWidth() * map.getHeight() * Integer.BYTES;
+    }
+}
@@ -1,6 +1,9 @@
 package org.esa.s3tbx.l1csyn.op;
 
 import com.bc.ceres.core.ProgressMonitor;
+import org.esa.s3tbx.l1csyn.coreg.BufferStorage;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.s3tbx.l1csyn.coreg.OrphanRasterCache;
 import org.esa.snap.core.datamodel.Band;
 import org.esa.snap.core.datamodel.FlagCoding;
 import org.esa.snap.core.datamodel.GeoCoding;
@@ -21,19 +24,23 @@ import org.esa.snap.core.util.ProductUtils;
 import org.esa.snap.core.util.SystemUtils;
 import org.esa.snap.core.util.math.DistanceMeasure;
 import org.esa.snap.core.util.math.EuclideanDistance;
-import ucar.ma2.Array;
-import ucar.ma2.Index;
-import ucar.nc2.Attribute;
-import ucar.nc2.NetcdfFile;
-import ucar.nc2.NetcdfFiles;
-import ucar.nc2.Variable;
 
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 
 
@@ -43,10 +50,11 @@ import java.util.logging.Level;
         version = "1.0",
         authors = "Roman Shevchuk, Marco Peters",
         copyright = "(c) 2019 by Brockmann Consult",
-        description = "Coregister OLCI and SLSTR L1 Products using TreeMaps from MISR product. At minimum one Treemap for oblique and one for nadir view must be provided."
+        description = "Coregister OLCI and SLSTR L1 Products using correspondence indices from MISR product. At minimum one index for oblique and one for nadir view must be provided."
 )
 public class MisrOp extends Operator {
 
+
     @SourceProduct(alias = "olciSource", description = "OLCI source product")
     private Product olciSourceProduct;
 
@@ -61,215 +69,421 @@ public class MisrOp extends Operator {
     private boolean orphan;
 
     @Parameter(description = "Pixel map for S1 nadir view")
-    private Map<int[], int[]> S1PixelMap;
+    private CorrespondenceIndex S1PixelMap;
 
     @Parameter(description = "Pixel map for S2 nadir view")
-    private Map<int[], int[]> S2PixelMap;
+    private CorrespondenceIndex S2PixelMap;
 
     @Parameter(description = "Pixel map for S3 nadir view")
-    private Map<int[], int[]> S3PixelMap;
+    private CorrespondenceIndex S3PixelMap;
 
     @Parameter(description = "Pixel map for S4 nadir view")
-    private Map<int[], int[]> S4PixelMap;
+    private CorrespondenceIndex S4PixelMap;
 
     @Parameter(description = "Pixel map for S5 nadir view")
-    private Map<int[], int[]> S5PixelMap;
+    private CorrespondenceIndex S5PixelMap;
 
     @Parameter(description = "Pixel map for S6 nadir view")
-    private Map<int[], int[]> S6PixelMap;
+    private CorrespondenceIndex S6PixelMap;
 
     @Parameter(description = "Pixel map for ao oblique view")
-    private Map<int[], int[]> aoPixelMap;
+    private CorrespondenceIndex aoPixelMap;
 
     @Parameter(description = "Pixel map for bo oblique view")
-    private Map<int[], int[]> boPixelMap;
+    private CorrespondenceIndex boPixelMap;
 
     @Parameter(description = "Pixel map for co oblique view")
-    private Map<int[], int[]> coPixelMap;
+    private CorrespondenceIndex coPixelMap;
 
     @Parameter(description = "Orphan pixel map for S1 nadir view")
-    private Map<int[], int[]> S1OrphanMap;
+    private CorrespondenceIndex S1OrphanMap;
 
     @Parameter(description = "Orphan pixel map for S2 nadir view")
-    private Map<int[], int[]> S2OrphanMap;
+    private CorrespondenceIndex S2OrphanMap;
 
     @Parameter(description = "Orphan pixel map for S3 nadir view")
-    private Map<int[], int[]> S3OrphanMap;
+    private CorrespondenceIndex S3OrphanMap;
 
     @Parameter(description = "Orphan pixel map for S4 nadir view")
-    private Map<int[], int[]> S4OrphanMap;
+    private CorrespondenceIndex S4OrphanMap;
 
     @Parameter(description = "Orphan pixel map for S5 nadir view")
-    private Map<int[], int[]> S5OrphanMap;
+    private CorrespondenceIndex S5OrphanMap;
 
     @Parameter(alias = "S6OrphanMap", description = "Orphan pixel map for S6 nadir view")
-    private Map<int[], int[]> S6OrphanMap;
+    private CorrespondenceIndex S6OrphanMap;
 
     @Parameter(description = "Orphan pixel map for ao oblique view")
-    private Map<int[], int[]> aoOrphanMap;
+    private CorrespondenceIndex aoOrphanMap;
 
     @Parameter(description = "Orphan pixel map for bo oblique view")
-    private Map<int[], int[]> boOrphanMap;
+    private CorrespondenceIndex boOrphanMap;
 
     @Parameter(description = "Orphan pixel map for co oblique view")
-    private Map<int[], int[]> coOrphanMap;
+    private CorrespondenceIndex coOrphanMap;
+
+    @Parameter(description = "Maximum memory in MB used to cache the orphan data of the SLSTR bands",
+            defaultValue = "1024", interval = "[0,*)")
+    private int orphanCacheSize;
+
+    @Parameter(description = "Allocates the cached orphan data. If not given, it is held on the Java heap.")
+    private BufferStorage bufferStorage;
+
+    @Parameter(description = "Collects the metrics of the tile computation. If not given, the metrics are not passed on.")
+    private ProcessingReport processingReport;
+
+    @Parameter(description = "The names of the OLCI bands and tie-point grids copied to the target product. If not given, all are copied.")
+    private String[] olciRasterNames;
+
+    @Parameter(description = "The names of the SLSTR bands copied to the target product. If not given, all are copied.")
+    private String[] slstrRasterNames;
+
     @TargetProduct
     private Product targetProduct;
 
+    private OrphanRasterCache orphanRasterCache;
+    private Map<Band, BandRouting> bandRoutings;
+    private final Map<List<Object>, FutureTask<NeighborFillIndex>> neighborFillIndices = new ConcurrentHashMap<>();
+
     @Override
     public void initialize() throws OperatorException {
-        targetProduct = createTargetProduct(olciSourceProduct, slstrSourceProduct, fillEmptyPixels);
+        if (processingReport == null) {
+            processingReport = new ProcessingReport();
+        }
+        targetProduct = createTargetProduct(olciSourceProduct, slstrSourceProduct, fillEmptyPixels,
+                                            toSet(olciRasterNames), toSet(slstrRasterNames));
+        bandRoutings = createBandRoutings();
+        // the bands of a tile are computed together by computeTileStack, even if only one of them is requested
+        setRequiresAllBands(true);
+        if (orphan) {
+            orphanRasterCache = new OrphanRasterCache(orphanCacheSize * 1024L * 1024L,
+                                                      bufferStorage != null ? bufferStorage : BufferStorage.HEAP);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (orphanRasterCache != null) {
+            orphanRasterCache.clear();
+            orphanRasterCache = null;
+        }
+        neighborFillIndices.clear();
+        super.dispose();
+    }
+
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) {
+        // the SLSTR bands sharing their maps and geo-codings are computed together, so the positions are only
+        // looked up once per tile
+        final Map<List<Object>, List<Band>> slstrBandGroups = new LinkedHashMap<>();
+        for (Map.Entry<Band, Tile> entry : targetTiles.entrySet()) {
+            final Band targetBand = entry.getKey();
+            final BandRouting routing = bandRoutings.get(targetBand);
+            if (routing == null) {
+                continue;
+            }
+            if (routing.sourceBand != null) {
+                final List<Object> key = Arrays.asList(routing.pixelMap, routing.orphanMap, targetBand.getGeoCoding(),
+                                                       routing.sourceBand.getGeoCoding());
+                slstrBandGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(targetBand);
+            } else {
+                computeFlagTile(entry.getValue(), routing);
+            }
+        }
+        for (List<Band> targetBands : slstrBandGroups.values()) {
+            computeSlstrTiles(targetBands, targetTiles, targetRectangle);
+        }
     }
 
     @Override
     public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) {
-        Map<int[], int[]> map = new HashMap<>();
-        Map<int[], int[]> mapOrphan = new HashMap<>();
-
-        if (targetBand.getName().contains("_ao")) {
-            map = aoPixelMap;
-            mapOrphan = aoOrphanMap;
-        } else if (targetBand.getName().contains("_bo")) {
-            map = boPixelMap;
-            mapOrphan = boOrphanMap;
-        } else if (targetBand.getName().contains("_co")) {
-            map = coPixelMap;
-            mapOrphan = coOrphanMap;
-        } else if ((targetBand.getName().contains("S1") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S1") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S1") && targetBand.getName().contains("_cn"))) {
-            map = S1PixelMap;
-            mapOrphan = S1OrphanMap;
-        } else if ((targetBand.getName().contains("S2") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S2") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S2") && targetBand.getName().contains("_cn"))) {
-            map = S2PixelMap;
-            mapOrphan = S2OrphanMap;
-        } else if ((targetBand.getName().contains("S3") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S3") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S3") && targetBand.getName().contains("_cn"))) {
-            map = S3PixelMap;
-            mapOrphan = S3OrphanMap;
-        } else if ((targetBand.getName().contains("S4") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S4") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S4") && targetBand.getName().contains("_cn"))) {
-            map = S4PixelMap;
-            mapOrphan = S4OrphanMap;
-        } else if ((targetBand.getName().contains("S5") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S5") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S5") && targetBand.getName().contains("_cn"))) {
-            map = S5PixelMap;
-            mapOrphan = S5OrphanMap;
-        } else if ((targetBand.getName().contains("S6") && targetBand.getName().contains("_an")) || (targetBand.getName().contains("S6") && targetBand.getName().contains("_bn")) || (targetBand.getName().contains("S6") && targetBand.getName().contains("_cn"))) {
-            map = S6PixelMap;
-            mapOrphan = S6OrphanMap;
-        } else if ((targetBand.getName().contains("_an") || targetBand.getName().contains("_bn") || targetBand.getName().contains("_cn"))) {
-            map = S3PixelMap;
-            mapOrphan = S3OrphanMap;
-        }
-
-        final double targetNoDataValue = targetBand.getNoDataValue();
-        if (slstrSourceProduct.containsBand(targetBand.getName())) {
-            Band sourceBand = slstrSourceProduct.getBand(targetBand.getName());
-            int sourceRasterWidth = sourceBand.getRasterWidth();
-            int sourceRasterHeight = sourceBand.getRasterHeight();
+        final BandRouting routing = bandRoutings.get(targetBand);
+        if (routing == null) {
+            return;
+        }
+        if (routing.sourceBand != null) {
+            computeSlstrTiles(Collections.singletonList(targetBand), Collections.singletonMap(targetBand, targetTile),
+                              targetTile.getRectangle());
+        } else {
+            computeFlagTile(targetTile, routing);
+        }
+    }
+
+    private void computeFlagTile(Tile targetTile, BandRouting routing) {
+        final CorrespondenceIndex map = routing.pixelMap;
+        if (routing.isMisrFlags) {
+            final CorrespondenceIndex.Coverage coverage = map.getCoverage(targetTile.getRectangle());
+            if (coverage != CorrespondenceIndex.Coverage.PARTIAL) {
+                setAllSamples(targetTile, targetTile.getRectangle(), coverage == CorrespondenceIndex.Coverage.FULL ? 1 : 0);
+                return;
+            }
             for (Tile.Pos pos : targetTile) {
-                targetTile.setSample(pos.x, pos.y, targetNoDataValue);
-                int[] position = {pos.x, pos.y};
-                int[] slstrGridPosition = map.get(position);
-                if (slstrGridPosition != null) {
-                    final int slstrGridPosX = slstrGridPosition[0];
-                    final int slstrGridPosY = slstrGridPosition[1];
-                    if (slstrGridPosX < sourceRasterWidth && slstrGridPosY < sourceRasterHeight) {
-                        double reflecValue = sourceBand.getSampleFloat(slstrGridPosX, slstrGridPosY);
-                        if (reflecValue < 0) {
-                            reflecValue = targetNoDataValue;
-                        }
-                        targetTile.setSample(pos.x, pos.y, reflecValue);
-                    }
+                if (map.contains(pos.x, pos.y)) {
+                    targetTile.setSample(pos.x, pos.y, 1);
+                } else {
+                    targetTile.setSample(pos.x, pos.y, 0);
                 }
             }
-            //Orphan pixels
-            if (orphan) {
-                String parentPath = slstrSourceProduct.getFileLocation().getParent();
-                String netcdfDataPath = parentPath + "/" + targetBand.getName() + ".nc";
-                if (Files.exists(Paths.get(netcdfDataPath))) {
-                    try (NetcdfFile netcdf = NetcdfFiles.open(netcdfDataPath)) {
-                        Variable orphanVariable = netcdf.findVariable(targetBand.getName().replace("radiance_", "radiance_orphan_"));
-                        if (orphanVariable == null) {
-                            throw new OperatorException(String.format("No information about orphans found in file '%s'", netcdfDataPath));
-                        }
-                        final Attribute scale_factorAttribute = orphanVariable.findAttribute("scale_factor");
-                        double scaleFactor = 1.0;
-                        if (scale_factorAttribute != null) {
-                            final Number scale_factor = scale_factorAttribute.getNumericValue();
-                            if (scale_factor != null) {
-                                scaleFactor = (double) scale_factor;
-                            }
-                        }
+        } else {
+            RasterDataNode oa17_radiance = olciSourceProduct.getRasterDataNode("Oa17_radiance");
 
+            for (Tile.Pos pos : targetTile) {
+                if (!map.contains(pos.x, pos.y) && oa17_radiance.isPixelValid(pos.x, pos.y)) {
+                    targetTile.setSample(pos.x, pos.y, 1);
+                }
+            }
+        }
+    }
 
-                        final Array orphanData = orphanVariable.read();
-                        final int[] dataShape = orphanData.getShape(); // shape is [2400, 374] for S3_radiance_orphan_an
-                        final Index rawIndex = orphanData.getIndex();
-                        for (Tile.Pos pos : targetTile) {
-                            int[] position = {pos.x, pos.y};
-                            int[] slstrOrphanPosition = mapOrphan.get(position);
-                            if (slstrOrphanPosition != null) {
-                                final int orphanPosX = slstrOrphanPosition[0];
-                                final int orphanPosY = slstrOrphanPosition[1];
-                                if (orphanPosX < dataShape[0] && orphanPosY < dataShape[1]) {
-                                    rawIndex.set(orphanPosY, orphanPosX); // Dimension is Y, X  --> so 'wrong' order of Y and X here
-                                    double dataValue = orphanData.getDouble(rawIndex);
-                                    if (dataValue > 0) {
-                                        targetTile.setSample(pos.x, pos.y, dataValue * scaleFactor);
+    // the target bands share the pixel map, the orphan map and the geo-codings
+    private void computeSlstrTiles(List<Band> targetBands, Map<Band, Tile> targetTiles, Rectangle targetRectangle) {
+        final BandRouting firstRouting = bandRoutings.get(targetBands.get(0));
+        try (ProcessingReport.Stage ignored = processingReport.start("tile", firstRouting.bandType)) {
+            // fetch all SLSTR pixels needed for this tile at once, including the neighbours used for filling
+            final Rectangle olciRegion = new Rectangle(targetRectangle);
+            if (fillEmptyPixels) {
+                olciRegion.grow(NeighborFillIndex.MAX_WINDOW_SIZE / 2, NeighborFillIndex.MAX_WINDOW_SIZE / 2);
+            }
+            // tiles outside of the swath of the view, as large parts of the frame for the oblique bands
+            if (firstRouting.pixelMap.getCoverage(olciRegion) == CorrespondenceIndex.Coverage.EMPTY
+                    && (!orphan || firstRouting.orphanMap == null
+                    || firstRouting.orphanMap.getCoverage(targetRectangle) == CorrespondenceIndex.Coverage.EMPTY)) {
+                for (Band targetBand : targetBands) {
+                    setAllSamples(targetTiles.get(targetBand), targetRectangle, bandRoutings.get(targetBand).noDataValue);
+                }
+                return;
+            }
+            final TilePositions positions = new TilePositions(targetRectangle, firstRouting.pixelMap, firstRouting.orphanMap);
+            final Rectangle slstrBounds = firstRouting.pixelMap.getSlstrBounds(olciRegion);
+            for (Band targetBand : targetBands) {
+                computeSlstrTile(targetBand, targetTiles.get(targetBand), bandRoutings.get(targetBand), positions, slstrBounds);
+            }
+        }
+    }
+
+    private static void setAllSamples(Tile targetTile, Rectangle rectangle, double value) {
+        final double[] samples = new double[rectangle.width * rectangle.height];
+        Arrays.fill(samples, value);
+        targetTile.setSamples(samples);
+    }
+
+    private void computeSlstrTile(Band targetBand, Tile targetTile, BandRouting routing, TilePositions positions,
+                                  Rectangle slstrBounds) {
+        final Band sourceBand = routing.sourceBand;
+        final double targetNoDataValue = routing.noDataValue;
+        final Rectangle sourceRectangle = slstrBounds.intersection(
+                new Rectangle(0, 0, sourceBand.getRasterWidth(), sourceBand.getRasterHeight()));
+        final Tile sourceTile = sourceRectangle.isEmpty() ? null : getSourceTile(sourceBand, sourceRectangle);
+        final Rectangle rectangle = positions.rectangle;
+        int mappedCount = 0;
+        int orphanCount = 0;
+        int filledCount = 0;
+        // counts the pixels which may be left at no-data, the fill pass is skipped if there are none
+        int noDataCount = 0;
+        for (int y = rectangle.y, i = 0; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++, i++) {
+                double value = targetNoDataValue;
+                final int slstrX = positions.slstrX[i];
+                if (slstrX != CorrespondenceIndex.NO_CORRESPONDENCE && sourceTile != null
+                        && sourceRectangle.contains(slstrX, positions.slstrY[i])) {
+                    value = getSourceSample(sourceTile, sourceBand, slstrX, positions.slstrY[i]);
+                    if (value < 0) {
+                        value = targetNoDataValue;
+                    } else {
+                        mappedCount++;
+                    }
+                }
+                if (value == targetNoDataValue) {
+                    noDataCount++;
+                }
+                targetTile.setSample(x, y, value);
+            }
+        }
+        //Orphan pixels
+        if (orphan) {
+            final File netcdfDataFile = routing.orphanFile;
+            if (netcdfDataFile.exists()) {
+                try (ProcessingReport.Stage ignored = processingReport.start("orphans", routing.bandType)) {
+                    final OrphanRasterCache.OrphanRaster orphanRaster = orphanRasterCache.get(netcdfDataFile, routing.orphanVariableName);
+                    if (orphanRaster == null) {
+                        throw new OperatorException(String.format("No information about orphans found in file '%s'", netcdfDataFile));
+                    }
+                    positions.resolveOrphans();
+                    for (int y = rectangle.y, i = 0; y < rectangle.y + rectangle.height; y++) {
+                        for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++, i++) {
+                            final int orphanX = positions.orphanX[i];
+                            if (orphanX != CorrespondenceIndex.NO_CORRESPONDENCE) {
+                                final float dataValue = orphanRaster.getValue(orphanX, positions.orphanY[i]);
+                                if (!Float.isNaN(dataValue)) {
+                                    targetTile.setSample(x, y, dataValue);
+                                    orphanCount++;
+                                    if (dataValue == targetNoDataValue) {
+                                        noDataCount++;
                                     }
                                 }
                             }
                         }
-                    } catch (IOException ioe) {
-                        SystemUtils.LOG.log(Level.WARNING, String.format("Could not process file %s: %s", netcdfDataPath, ioe.getMessage()));
                     }
-                } else {
-                    SystemUtils.LOG.log(Level.FINE, String.format("File %s does not exist", netcdfDataPath));
+                } catch (IOException ioe) {
+                    SystemUtils.LOG.log(Level.WARNING, String.format("Could not process file %s: %s", netcdfDataFile, ioe.getMessage()));
                 }
+            } else {
+                SystemUtils.LOG.log(Level.FINE, String.format("File %s does not exist", netcdfDataFile));
             }
+        }
 
-            if (fillEmptyPixels) {
-                for (Tile.Pos pos : targetTile) {
-                    if (targetTile.getSampleDouble(pos.x, pos.y) == targetNoDataValue) {
-                        double neighborPixel = getNeighborPixel(pos.x, pos.y, targetBand, map, sourceBand);
-                        targetTile.setSample(pos.x, pos.y, neighborPixel);
+        if (fillEmptyPixels && noDataCount > 0) {
+            if (positions.fillIndex == null) {
+                positions.fillIndex = getNeighborFillIndex(routing.pixelMap, targetBand.getGeoCoding(), sourceBand.getGeoCoding(),
+                                                           routing.bandType);
+            }
+            try (ProcessingReport.Stage ignored = processingReport.start("fill", routing.bandType)) {
+                filledCount = fillTile(targetBand, targetTile, routing, sourceTile, positions);
+            }
+        }
+        processingReport.countPixels(routing.bandType, mappedCount, orphanCount, filledCount);
+    }
+
+    // returns the number of filled pixels
+    private int fillTile(Band targetBand, Tile targetTile, BandRouting routing, Tile sourceTile, TilePositions positions) {
+        final Band sourceBand = routing.sourceBand;
+        final CorrespondenceIndex map = routing.pixelMap;
+        final double targetNoDataValue = routing.noDataValue;
+        final Rectangle rectangle = positions.rectangle;
+        int filledCount = 0;
+        for (int y = rectangle.y, i = 0; y < rectangle.y + rectangle.height; y++) {
+            for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++, i++) {
+                if (targetTile.getSampleDouble(x, y) == targetNoDataValue) {
+                    double neighborPixel = targetNoDataValue;
+                    positions.resolveFill(i, x, y);
+                    if (positions.fillSlstrX[i] != TilePositions.NO_FILL) {
+                        neighborPixel = getSourceSample(sourceTile, sourceBand, positions.fillSlstrX[i], positions.fillSlstrY[i],
+                                                        targetNoDataValue);
+                        if (neighborPixel == targetNoDataValue && positions.fillIsNeighbor[i]) {
+                            // the closest neighbour has no value, continue the search in larger windows
+                            neighborPixel = getNeighborPixel(x, y, targetBand, map, sourceBand, sourceTile);
+                        }
+                    }
+                    targetTile.setSample(x, y, neighborPixel);
+                    if (neighborPixel != targetNoDataValue) {
+                        filledCount++;
                     }
                 }
             }
+        }
+        return filledCount;
+    }
 
-        } else if (targetBand.getName().equals("misr_flags")) {
-            map = S3PixelMap;
-            for (Tile.Pos pos : targetTile) {
-                int[] position = {pos.x, pos.y};
-                int[] slstrGridPosition = map.get(position);
-                if (slstrGridPosition != null) {
-                    targetTile.setSample(pos.x, pos.y, 1);
-                } else {
-                    targetTile.setSample(pos.x, pos.y, 0);
+    private Map<Band, BandRouting> createBandRoutings() {
+        final Map<Band, BandRouting> routings = new HashMap<>();
+        for (Band targetBand : targetProduct.getBands()) {
+            final String bandName = targetBand.getName();
+            if (slstrSourceProduct.containsBand(bandName)) {
+                final String bandType = selectBandType(bandName);
+                final CorrespondenceIndex[] maps = getMaps(bandType);
+                File orphanFile = null;
+                if (orphan) {
+                    orphanFile = new File(slstrSourceProduct.getFileLocation().getParentFile(), bandName + ".nc");
                 }
+                routings.put(targetBand, new BandRouting(slstrSourceProduct.getBand(bandName), bandType, maps[0], maps[1],
+                                                         targetBand.getNoDataValue(), false, orphanFile,
+                                                         bandName.replace("radiance_", "radiance_orphan_")));
+            } else if (bandName.equals("misr_flags") || bandName.equals("filled_flags")) {
+                routings.put(targetBand, new BandRouting(null, null, S3PixelMap, null, targetBand.getNoDataValue(),
+                                                         bandName.equals("misr_flags"), null, null));
             }
-        } else if (targetBand.getName().equals("filled_flags")) {
-            map = S3PixelMap;
-            RasterDataNode oa17_radiance = olciSourceProduct.getRasterDataNode("Oa17_radiance");
+        }
+        return routings;
+    }
 
-            for (Tile.Pos pos : targetTile) {
-                int[] position = {pos.x, pos.y};
-                int[] slstrGridPosition = map.get(position);
-                if (slstrGridPosition == null && oa17_radiance.isPixelValid(pos.x, pos.y)) {
-                    targetTile.setSample(pos.x, pos.y, 1);
+    /**
+     * @return the band type whose maps apply to the SLSTR band with the given name or null if there is none
+     */
+    static String selectBandType(String bandName) {
+        if (bandName.contains("_ao")) {
+            return "ao";
+        } else if (bandName.contains("_bo")) {
+            return "bo";
+        } else if (bandName.contains("_co")) {
+            return "co";
+        }
+        if (bandName.contains("_an") || bandName.contains("_bn") || bandName.contains("_cn")) {
+            for (int i = 1; i <= 6; i++) {
+                if (bandName.contains("S" + i)) {
+                    return "S" + i;
                 }
             }
+            return "S3";
+        }
+        return null;
+    }
+
+    /**
+     * @return the pixel map and the orphan pixel map of the given band type
+     */
+    private CorrespondenceIndex[] getMaps(String bandType) {
+        if (bandType == null) {
+            return new CorrespondenceIndex[]{null, null};
+        }
+        switch (bandType) {
+            case "ao":
+                return new CorrespondenceIndex[]{aoPixelMap, aoOrphanMap};
+            case "bo":
+                return new CorrespondenceIndex[]{boPixelMap, boOrphanMap};
+            case "co":
+                return new CorrespondenceIndex[]{coPixelMap, coOrphanMap};
+            case "S1":
+                return new CorrespondenceIndex[]{S1PixelMap, S1OrphanMap};
+            case "S2":
+                return new CorrespondenceIndex[]{S2PixelMap, S2OrphanMap};
+            case "S4":
+                return new CorrespondenceIndex[]{S4PixelMap, S4OrphanMap};
+            case "S5":
+                return new CorrespondenceIndex[]{S5PixelMap, S5OrphanMap};
+            case "S6":
+                return new CorrespondenceIndex[]{S6PixelMap, S6OrphanMap};
+            default:
+                return new CorrespondenceIndex[]{S3PixelMap, S3OrphanMap};
         }
     }
 
-    private double getNeighborPixel(int x, int y, Band targetBand, Map<int[], int[]> map, Band sourceBand) {
+    /**
+     * Returns the fill index of the given map, which is computed once and shared by all bands using the map.
+     */
+    private NeighborFillIndex getNeighborFillIndex(CorrespondenceIndex map, GeoCoding olciGeoCoding, GeoCoding slstrGeoCoding,
+                                                   String bandType) {
+        final List<Object> key = Arrays.asList(map, slstrGeoCoding);
+        FutureTask<NeighborFillIndex> task = new FutureTask<>(() -> {
+            try (ProcessingReport.Stage ignored = processingReport.start("fillIndex", bandType)) {
+                return NeighborFillIndex.create(map, olciGeoCoding, slstrGeoCoding);
+            }
+        });
+        final FutureTask<NeighborFillIndex> existing = neighborFillIndices.putIfAbsent(key, task);
+        if (existing == null) {
+            task.run();
+        } else {
+            task = existing;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OperatorException("Interrupted while computing the neighbour fill index", e);
+        } catch (ExecutionException e) {
+            neighborFillIndices.remove(key, task);
+            throw new OperatorException("Could not compute the neighbour fill index", e.getCause());
+        }
+    }
+
+    private double getNeighborPixel(int x, int y, Band targetBand, CorrespondenceIndex map, Band sourceBand, Tile sourceTile) {
         double neighborPixel = targetBand.getNoDataValue();
-        int[] position = {x, y};
-        int[] slstrGridPosition = map.get(position);
         GeoPos pixelGeoPos = targetBand.getGeoCoding().getGeoPos(new PixelPos(x, y), null);
-        if (slstrGridPosition != null) {
-            return sourceBand.getSampleFloat(slstrGridPosition[0], slstrGridPosition[1]);
+        if (map.contains(x, y)) {
+            return getSourceSample(sourceTile, sourceBand, map.getSlstrX(x, y), map.getSlstrY(x, y), neighborPixel);
         } else {
             EuclideanDistance euclideanDistance = new EuclideanDistance(pixelGeoPos.getLon(), pixelGeoPos.getLat());
-            for (int size = 3; size < 10; size += 2) {
-                neighborPixel = searchClosetPixel(size, sourceBand, euclideanDistance, x, y, targetBand, map);
+            for (int size = 3; size <= NeighborFillIndex.MAX_WINDOW_SIZE; size += 2) {
+                neighborPixel = searchClosetPixel(size, sourceBand, sourceTile, euclideanDistance, x, y, targetBand, map);
                 if (neighborPixel != targetBand.getNoDataValue()) {
                     return neighborPixel;
                 }
@@ -278,20 +492,22 @@ public class MisrOp extends Operator {
         return neighborPixel;
     }
 
-    private double searchClosetPixel(int size, Band sourceBand, DistanceMeasure distanceMeasure, int x, int y, Band targetBand, Map<int[], int[]> map) {
+    private double searchClosetPixel(int size, Band sourceBand, Tile sourceTile, DistanceMeasure distanceMeasure, int x, int y, Band targetBand, CorrespondenceIndex map) {
         double distance = Double.MAX_VALUE;
         double neighborPixel = targetBand.getNoDataValue();
         int step = size / 2;
         final GeoCoding sourceGeoCoding = sourceBand.getGeoCoding();
         for (int i = 0; i < size; i += 1) {
             for (int j = 0; j < size; j += 1) {
-                int[] neighborPos = {x - step + i, y - step + j};
-                int[] slstrNeighbor = map.get(neighborPos);
-                if (slstrNeighbor != null) {
-                    GeoPos neighborGeoPos = sourceGeoCoding.getGeoPos(new PixelPos(slstrNeighbor[0], slstrNeighbor[1]), null);
+                final int neighborX = x - step + i;
+                final int neighborY = y - step + j;
+                if (map.contains(neighborX, neighborY)) {
+                    final int slstrNeighborX = map.getSlstrX(neighborX, neighborY);
+                    final int slstrNeighborY = map.getSlstrY(neighborX, neighborY);
+                    GeoPos neighborGeoPos = sourceGeoCoding.getGeoPos(new PixelPos(slstrNeighborX, slstrNeighborY), null);
                     double neighborDist = distanceMeasure.distance(neighborGeoPos.getLon(), neighborGeoPos.getLat());
                     if (neighborDist < distance) {
-                        neighborPixel = sourceBand.getSampleFloat(slstrNeighbor[0], slstrNeighbor[1]);
+                        neighborPixel = getSourceSample(sourceTile, sourceBand, slstrNeighborX, slstrNeighborY, targetBand.getNoDataValue());
                         distance = neighborDist;
                     }
                 }
@@ -300,19 +516,46 @@ public class MisrOp extends Operator {
         return neighborPixel;
     }
 
+    private static double getSourceSample(Tile sourceTile, Band sourceBand, int x, int y, double defaultValue) {
+        if (sourceTile == null || !sourceTile.getRectangle().contains(x, y)) {
+            return defaultValue;
+        }
+        return getSourceSample(sourceTile, sourceBand, x, y);
+    }
+
+    // reads the geophysical sample with float precision, as Band.getSampleFloat does
+    private static double getSourceSample(Tile sourceTile, Band sourceBand, int x, int y) {
+        final double rawValue = sourceTile.getDataBuffer().getElemDoubleAt(sourceTile.getDataBufferIndex(x, y));
+        return (float) sourceBand.scale(rawValue);
+    }
+
 
-    static Product createTargetProduct(Product olciSourceProduct, Product slstrSourceProduct, boolean fillEmptyPixels) {
+    private static Set<String> toSet(String[] names) {
+        return names != null ? new HashSet<>(Arrays.asList(names)) : null;
+    }
+
+    /**
+     * @param olciRasterNames  the OLCI bands and tie-point grids to copy or null for all
+     * @param slstrRasterNames the SLSTR bands to copy or null for all
+     */
+    static Product createTargetProduct(Product olciSourceProduct, Product slstrSourceProduct, boolean fillEmptyPixels,
+                                       Set<String> olciRasterNames, Set<String> slstrRasterNames) {
         Product targetProduct = new Product(olciSourceProduct.getName(), olciSourceProduct.getProductType(),
                                             olciSourceProduct.getSceneRasterWidth(),
                                             olciSourceProduct.getSceneRasterHeight());
 
 
         for (Band olciBand : olciSourceProduct.getBands()) {
-            ProductUtils.copyBand(olciBand.getName(), olciSourceProduct, targetProduct, true);
+            if (olciRasterNames == null || olciRasterNames.contains(olciBand.getName())) {
+                ProductUtils.copyBand(olciBand.getName(), olciSourceProduct, targetProduct, true);
+            }
         }
 
         for (Band slstrBand : slstrSourceProduct.getBands()) {
             final String slstrBandName = slstrBand.getName();
+            if (slstrRasterNames != null && !slstrRasterNames.contains(slstrBandName)) {
+                continue;
+            }
             if (slstrBandName.contains("_an") || slstrBandName.contains("_bn") || slstrBandName.contains("_cn")
                     || slstrBandName.contains("_ao") || slstrBandName.contains("_bo") || slstrBandName.contains("_co")) {
                 Band copiedBand = targetProduct.addBand(slstrBandName, ProductData.TYPE_FLOAT32);
@@ -332,7 +575,15 @@ public class MisrOp extends Operator {
         }
 
         ProductUtils.copyMetadata(olciSourceProduct, targetProduct);
-        ProductUtils.copyTiePointGrids(olciSourceProduct, targetProduct);
+        if (olciRasterNames == null) {
+            ProductUtils.copyTiePointGrids(olciSourceProduct, targetProduct);
+        } else {
+            for (String gridName : olciSourceProduct.getTiePointGridNames()) {
+                if (olciRasterNames.contains(gridName)) {
+                    ProductUtils.copyTiePointGrid(gridName, olciSourceProduct, targetProduct);
+                }
+            }
+        }
         ProductUtils.copyMasks(olciSourceProduct, targetProduct);
         ProductUtils.copyFlagBands(olciSourceProduct, targetProduct, true);
         ProductUtils.copyGeoCoding(olciSourceProduct, targetProduct);
@@ -369,6 +620,106 @@ public class MisrOp extends Operator {
         return targetProduct;
     }
 
+    /**
+     * The SLSTR positions of the pixels of a target tile, shared by the bands using the same maps. The positions are
+     * indexed by {@code (y - rectangle.y) * rectangle.width + x - rectangle.x}. The orphan and the fill positions
+     * are resolved when they are needed first.
+     */
+    private static final class TilePositions {
+        static final int NO_FILL = Integer.MIN_VALUE;
+        private static final int UNRESOLVED = Integer.MAX_VALUE;
+
+        final Rectangle rectangle;
+        final int[] slstrX;
+        final int[] slstrY;
+        int[] orphanX;
+        int[] orphanY;
+        NeighborFillIndex fillIndex;
+        int[] fillSlstrX;
+        int[] fillSlstrY;
+        boolean[] fillIsNeighbor;
+        private final CorrespondenceIndex map;
+        private final CorrespondenceIndex orphanMap;
+
+        TilePositions(Rectangle rectangle, CorrespondenceIndex map, CorrespondenceIndex orphanMap) {
+            this.rectangle = rectangle;
+            this.map = map;
+            this.orphanMap = orphanMap;
+            final int size = rectangle.width * rectangle.height;
+            slstrX = new int[size];
+            slstrY = new int[size];
+            resolve(map, slstrX, slstrY);
+        }
+
+        void resolveOrphans() {
+            if (orphanX == null) {
+                orphanX = new int[slstrX.length];
+                orphanY = new int[slstrX.length];
+                resolve(orphanMap, orphanX, orphanY);
+            }
+        }
+
+        // the SLSTR position of the pixel which fills the given one
+        void resolveFill(int i, int x, int y) {
+            if (fillSlstrX == null) {
+                fillSlstrX = new int[slstrX.length];
+                fillSlstrY = new int[slstrX.length];
+                fillIsNeighbor = new boolean[slstrX.length];
+                Arrays.fill(fillSlstrX, UNRESOLVED);
+            }
+            if (fillSlstrX[i] != UNRESOLVED) {
+                return;
+            }
+            final int fillX = fillIndex.getSourceX(x, y);
+            if (fillX == NeighborFillIndex.NO_NEIGHBOR) {
+                fillSlstrX[i] = NO_FILL;
+                return;
+            }
+            final int fillY = fillIndex.getSourceY(x, y);
+            fillSlstrX[i] = map.getSlstrX(fillX, fillY);
+            fillSlstrY[i] = map.getSlstrY(fillX, fillY);
+            fillIsNeighbor[i] = fillX != x || fillY != y;
+        }
+
+        private void resolve(CorrespondenceIndex index, int[] xs, int[] ys) {
+            for (int y = rectangle.y, i = 0; y < rectangle.y + rectangle.height; y++) {
+                for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++, i++) {
+                    xs[i] = index.getSlstrX(x, y);
+                    if (xs[i] != CorrespondenceIndex.NO_CORRESPONDENCE) {
+                        ys[i] = index.getSlstrY(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Everything computeTile needs to know about a target band, resolved once in initialize().
+     */
+    private static final class BandRouting {
+        // null for the flag bands
+        final Band sourceBand;
+        final String bandType;
+        final CorrespondenceIndex pixelMap;
+        final CorrespondenceIndex orphanMap;
+        final double noDataValue;
+        final boolean isMisrFlags;
+        final File orphanFile;
+        final String orphanVariableName;
+
+        BandRouting(Band sourceBand, String bandType, CorrespondenceIndex pixelMap, CorrespondenceIndex orphanMap,
+                    double noDataValue, boolean isMisrFlags, File orphanFile, String orphanVariableName) {
+            this.sourceBand = sourceBand;
+            this.bandType = bandType;
+            this.pixelMap = pixelMap;
+            this.orphanMap = orphanMap;
+            this.noDataValue = noDataValue;
+            this.isMisrFlags = isMisrFlags;
+            this.orphanFile = orphanFile;
+            this.orphanVariableName = orphanVariableName;
+        }
+    }
+
     public static class Spi extends OperatorSpi {
         public Spi() {
             super(MisrOp.class);
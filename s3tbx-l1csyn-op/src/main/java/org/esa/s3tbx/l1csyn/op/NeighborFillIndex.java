@@ -0,0 +1,156 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.util.math.EuclideanDistance;
+
+/**
+ * Precomputed source of the fill value for every OLCI pixel of a {@link CorrespondenceIndex}.
+ * <p>
+ * A pixel with a correspondence is filled from itself. A pixel without a correspondence is filled from the
+ * neighbour which is used by the window search of {@link MisrOp}: the smallest square window (3x3 up to 9x9)
+ * centred on the pixel which contains mapped pixels is searched, and the mapped pixel whose SLSTR geo-position
+ * is closest to the geo-position of the OLCI pixel is taken. Windows without mapped pixels are skipped by means
+ * of a Chebyshev distance transform, so geo-positions are only computed for pixels close to mapped ones.
+ * <p>
+ * The chosen neighbour is stored as offset within the largest window, which needs one byte per pixel.
+ */
+final class NeighborFillIndex {
+
+    static final int NO_NEIGHBOR = -1;
+
+    static final int MAX_WINDOW_SIZE = 9;
+    private static final int MAX_DISTANCE = MAX_WINDOW_SIZE / 2;
+    private static final byte NO_OFFSET = -1;
+    private static final byte SELF = (byte) (MAX_DISTANCE * MAX_WINDOW_SIZE + MAX_DISTANCE);
+
+    private final int width;
+    private final int height;
+    private final byte[] offsets;
+
+    private NeighborFillIndex(int width, int height, byte[] offsets) {
+        this.width = width;
+        this.height = height;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param map            the correspondence index of the band
+     * @param olciGeoCoding  the geo-coding of the OLCI raster
+     * @param slstrGeoCoding the geo-coding of the SLSTR band
+     */
+    static NeighborFillIndex create(CorrespondenceIndex map, GeoCoding olciGeoCoding, GeoCoding slstrGeoCoding) {
+        final int width = map.getWidth();
+        final int height = map.getHeight();
+        final byte[] distances = computeChebyshevDistances(map, MAX_DISTANCE);
+        final byte[] offsets = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int index = y * width + x;
+                final int distance = distances[index];
+                if (distance == 0) {
+                    offsets[index] = SELF;
+                } else if (distance > MAX_DISTANCE) {
+                    offsets[index] = NO_OFFSET;
+                } else {
+                    offsets[index] = findClosestNeighbor(map, olciGeoCoding, slstrGeoCoding, x, y, 2 * distance + 1);
+                }
+            }
+        }
+        return new NeighborFillIndex(width, height, offsets);
+    }
+
+    /**
+     * @return the x position of the OLCI pixel the given pixel is filled from or {@link #NO_NEIGHBOR}
+     */
+    int getSourceX(int x, int y) {
+        final int offset = getOffset(x, y);
+        return offset == NO_OFFSET ? NO_NEIGHBOR : x + offset / MAX_WINDOW_SIZE - MAX_DISTANCE;
+    }
+
+    /**
+     * @return the y position of the OLCI pixel the given pixel is filled from or {@link #NO_NEIGHBOR}
+     */
+    int getSourceY(int x, int y) {
+        final int offset = getOffset(x, y);
+        return offset == NO_OFFSET ? NO_NEIGHBOR : y + offset % MAX_WINDOW_SIZE - MAX_DISTANCE;
+    }
+
+    private int getOffset(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return NO_OFFSET;
+        }
+        return offsets[y * width + x];
+    }
+
+    // same search order and tie-breaking as MisrOp.searchClosetPixel
+    private static byte findClosestNeighbor(CorrespondenceIndex map, GeoCoding olciGeoCoding, GeoCoding slstrGeoCoding,
+                                            int x, int y, int firstWindowSize) {
+        final GeoPos pixelGeoPos = olciGeoCoding.getGeoPos(new PixelPos(x, y), null);
+        final EuclideanDistance distanceMeasure = new EuclideanDistance(pixelGeoPos.getLon(), pixelGeoPos.getLat());
+        for (int size = firstWindowSize; size <= MAX_WINDOW_SIZE; size += 2) {
+            final int step = size / 2;
+            double distance = Double.MAX_VALUE;
+            byte closest = NO_OFFSET;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    final int neighborX = x - step + i;
+                    final int neighborY = y - step + j;
+                    if (map.contains(neighborX, neighborY)) {
+                        final PixelPos slstrPos = new PixelPos(map.getSlstrX(neighborX, neighborY), map.getSlstrY(neighborX, neighborY));
+                        final GeoPos neighborGeoPos = slstrGeoCoding.getGeoPos(slstrPos, null);
+                        final double neighborDist = distanceMeasure.distance(neighborGeoPos.getLon(), neighborGeoPos.getLat());
+                        if (neighborDist < distance) {
+                            distance = neighborDist;
+                            closest = (byte) ((i - step + MAX_DISTANCE) * MAX_WINDOW_SIZE + (j - step + MAX_DISTANCE));
+                        }
+                    }
+                }
+            }
+            if (closest != NO_OFFSET) {
+                return closest;
+            }
+        }
+        return NO_OFFSET;
+    }
+
+    /**
+     * Computes for every pixel the Chebyshev distance to the next pixel with a correspondence in two separable
+     * passes. Distances larger than {@code maxDistance} are reported as {@code maxDistance + 1}.
+     */
+    static byte[] computeChebyshevDistances(CorrespondenceIndex map, int maxDistance) {
+        final int width = map.getWidth();
+        final int height = map.getHeight();
+        final int far = maxDistance + 1;
+        final byte[] rowDistances = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            final int lineOffset = y * width;
+            int distance = far;
+            for (int x = 0; x < width; x++) {
+                distance = map.contains(x, y) ? 0 : Math.min(far, distance + 1);
+                rowDistances[lineOffset + x] = (byte) distance;
+            }
+            distance = far;
+            for (int x = width - 1; x >= 0; x--) {
+                distance = Math.min(far, Math.min(distance + 1, rowDistances[lineOffset + x]));
+                rowDistances[lineOffset + x] = (byte) distance;
+            }
+        }
+        final byte[] distances = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int distance = far;
+                for (int dy = -maxDistance; dy <= maxDistance; dy++) {
+                    final int neighborY = y + dy;
+                    if (neighborY >= 0 && neighborY < height) {
+                        distance = Math.min(distance, Math.max(Math.abs(dy), rowDistances[neighborY * width + x]));
+                    }
+                }
+                distances[y * width + x] = (byte) distance;
+            }
+        }
+        return distances;
+    }
+}
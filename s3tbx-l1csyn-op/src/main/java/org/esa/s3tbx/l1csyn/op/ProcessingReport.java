@@ -0,0 +1,257 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.StageTimer;
+import org.esa.snap.core.datamodel.MetadataAttribute;
+import org.esa.snap.core.datamodel.MetadataElement;
+import org.esa.snap.core.datamodel.ProductData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects metrics of the L1C SYN processing: wall-clock time, CPU time and heap usage of the processing stages
+ * and the number of pixels written by the MISR co-registration, both per band type.
+ * <p>
+ * A stage may run several times, e.g. once per tile. Its metrics are accumulated over all runs. The CPU time is the
+ * time of the thread running the stage. The used heap is sampled at the end of each run, its maximum is reported.
+ * The peak of the heap reported by the JVM is reset when the report is created and only sampled when the report is
+ * written, so it is the peak of this processing as long as no other processing runs in the same JVM. The report is
+ * thread-safe, runs of different stages are recorded without blocking each other.
+ * <p>
+ * The complete report is written as JSON file when the processing is finished. The metadata element added to the
+ * product is a snapshot taken at the end of the initialization, it contains the stages run until then, such as the
+ * derivation of the MISR maps, but neither the tile computation nor the pixel counts.
+ */
+public class ProcessingReport implements StageTimer {
+
+    static final String ELEMENT_NAME = "InitializationReport";
+    static final String ALL_BAND_TYPES = "all";
+
+    private static final double MB = 1024.0 * 1024.0;
+    private static final double MS = 1.0e6;
+
+    private final Map<String, StageMetrics> stages = new ConcurrentHashMap<>();
+    private final AtomicInteger stageCount = new AtomicInteger();
+    private final Map<String, long[]> pixelCounts = new TreeMap<>();
+
+    public ProcessingReport() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Starts a run of a stage, which is finished by closing the returned object.
+     *
+     * @param stage    the name of the stage
+     * @param bandType the band type the stage is run for or {@link #ALL_BAND_TYPES}
+     */
+    @Override
+    public Stage start(String stage, String bandType) {
+        return new Stage(stage, bandType);
+    }
+
+    /**
+     * Adds pixel counts of the given band type.
+     *
+     * @param mapped          the number of pixels set from the pixel map
+     * @param orphanFilled    the number of pixels set from the orphan pixels
+     * @param neighbourFilled the number of pixels filled from a neighbour
+     */
+    synchronized void countPixels(String bandType, long mapped, long orphanFilled, long neighbourFilled) {
+        final long[] counts = pixelCounts.computeIfAbsent(bandType, k -> new long[3]);
+        counts[0] += mapped;
+        counts[1] += orphanFilled;
+        counts[2] += neighbourFilled;
+    }
+
+    /**
+     * @return the metrics recorded so far as metadata element named {@value #ELEMENT_NAME}, with one element per
+     * stage and one per band type with pixel counts
+     */
+    synchronized MetadataElement createMetadataElement() {
+        final MetadataElement reportElement = new MetadataElement(ELEMENT_NAME);
+        reportElement.setAttributeDouble("peakHeapMB", getPeakHeapBytes() / MB);
+        for (StageMetrics metrics : getStageMetrics()) {
+            final MetadataElement stageElement = new MetadataElement(metrics.stage + "_" + metrics.bandType);
+            stageElement.setAttributeString("stage", metrics.stage);
+            stageElement.setAttributeString("bandType", metrics.bandType);
+            addLongAttribute(stageElement, "calls", metrics.calls);
+            stageElement.setAttributeDouble("wallTimeMs", metrics.wallNanos / MS);
+            stageElement.setAttributeDouble("cpuTimeMs", metrics.cpuNanos / MS);
+            stageElement.setAttributeDouble("maxUsedHeapMB", metrics.maxUsedHeapBytes / MB);
+            reportElement.addElement(stageElement);
+        }
+        for (Map.Entry<String, long[]> entry : pixelCounts.entrySet()) {
+            final MetadataElement pixelElement = new MetadataElement("pixels_" + entry.getKey());
+            pixelElement.setAttributeString("bandType", entry.getKey());
+            addLongAttribute(pixelElement, "mapped", entry.getValue()[0]);
+            addLongAttribute(pixelElement, "orphanFilled", entry.getValue()[1]);
+            addLongAttribute(pixelElement, "neighbourFilled", entry.getValue()[2]);
+            reportElement.addElement(pixelElement);
+        }
+        return reportElement;
+    }
+
+    /**
+     * Writes the report as JSON file.
+     *
+     * @param productName the name of the product the report belongs to
+     */
+    void writeJson(File file, String productName) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(toJson(productName));
+        }
+    }
+
+    synchronized String toJson(String productName) {
+        final List<String> stageEntries = new ArrayList<>();
+        for (StageMetrics metrics : getStageMetrics()) {
+            stageEntries.add(String.format(Locale.ROOT,
+                                           "    {\"stage\": %s, \"bandType\": %s, \"calls\": %d, \"wallTimeMs\": %.3f, " +
+                                                   "\"cpuTimeMs\": %.3f, \"maxUsedHeapMB\": %.1f}",
+                                           quote(metrics.stage), quote(metrics.bandType), metrics.calls,
+                                           metrics.wallNanos / MS, metrics.cpuNanos / MS,
+                                           metrics.maxUsedHeapBytes / MB));
+        }
+        final List<String> pixelEntries = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : pixelCounts.entrySet()) {
+            final long[] counts = entry.getValue();
+            pixelEntries.add(String.format(Locale.ROOT,
+                                           "    {\"bandType\": %s, \"mapped\": %d, \"orphanFilled\": %d, \"neighbourFilled\": %d}",
+                                           quote(entry.getKey()), counts[0], counts[1], counts[2]));
+        }
+        return String.format(Locale.ROOT, "{%n  \"product\": %s,%n  \"peakHeapMB\": %.1f,%n  \"stages\": [%n%s%n  ],%n  \"pixels\": [%n%s%n  ]%n}%n",
+                             quote(productName), getPeakHeapBytes() / MB,
+                             String.join(String.format(",%n"), stageEntries),
+                             String.join(String.format(",%n"), pixelEntries));
+    }
+
+    private void record(String stage, String bandType, long wallNanos, long cpuNanos, long usedHeapBytes) {
+        final StageMetrics metrics = stages.computeIfAbsent(stage + "/" + bandType,
+                                                            k -> new StageMetrics(stage, bandType, stageCount.getAndIncrement()));
+        synchronized (metrics) {
+            metrics.calls++;
+            metrics.wallNanos += wallNanos;
+            metrics.cpuNanos += cpuNanos;
+            metrics.maxUsedHeapBytes = Math.max(metrics.maxUsedHeapBytes, usedHeapBytes);
+        }
+    }
+
+    // copies of the metrics in the order the stages were first run
+    private List<StageMetrics> getStageMetrics() {
+        final List<StageMetrics> copies = new ArrayList<>();
+        for (StageMetrics metrics : stages.values()) {
+            synchronized (metrics) {
+                copies.add(metrics.copy());
+            }
+        }
+        copies.sort(Comparator.comparingInt(metrics -> metrics.order));
+        return copies;
+    }
+
+    private static void addLongAttribute(MetadataElement element, String name, long value) {
+        element.addAttribute(new MetadataAttribute(name, ProductData.createInstance(new long[]{value}), true));
+    }
+
+    private static String quote(String value) {
+        final StringBuilder builder = new StringBuilder("\"");
+        for (char c : (value == null ? "" : value).toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    private static long getUsedHeapBytes() {
+        final Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // the peak since the creation of the report, summed over the heap memory pools
+    private static long getPeakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static long getCurrentThreadCpuTime() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : 0;
+    }
+
+    /**
+     * A run of a stage. Must be closed by the thread which started it.
+     */
+    final class Stage implements StageTimer.Stage {
+
+        private final String stage;
+        private final String bandType;
+        private final long startNanos;
+        private final long startCpuNanos;
+
+        private Stage(String stage, String bandType) {
+            this.stage = stage;
+            this.bandType = bandType;
+            this.startNanos = System.nanoTime();
+            this.startCpuNanos = getCurrentThreadCpuTime();
+        }
+
+        @Override
+        public void close() {
+            record(stage, bandType, System.nanoTime() - startNanos, getCurrentThreadCpuTime() - startCpuNanos,
+                   getUsedHeapBytes());
+        }
+    }
+
+    private static final class StageMetrics {
+        final String stage;
+        final String bandType;
+        final int order;
+        long calls;
+        long wallNanos;
+        long cpuNanos;
+        long maxUsedHeapBytes;
+
+        StageMetrics(String stage, String bandType, int order) {
+            this.stage = stage;
+            this.bandType = bandType;
+            this.order = order;
+        }
+
+        StageMetrics copy() {
+            final StageMetrics copy = new StageMetrics(stage, bandType, order);
+            copy.calls = calls;
+            copy.wallNanos = wallNanos;
+            copy.cpuNanos = cpuNanos;
+            copy.maxUsedHeapBytes = maxUsedHeapBytes;
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Pairs OLCI and SLSTR products for batch processing and groups the pairs by the MISR product covering them.
+ * <p>
+ * Only the product names are used, which follow the Sentinel-3 naming convention
+ * {@code MMM_SS_L_TTTTTT_yyyyMMddTHHmmss_YYYYMMDDTHHMMSS_...}. An OLCI and an SLSTR product of the same mission are
+ * paired if their start times differ by at most {@link L1cSynOp#ALLOWED_TIME_DIFF} seconds, which implies the rule
+ * checked by the operator. Every product is used in one pair at most, closer pairs are preferred. A MISR product
+ * covers a pair if the start time of the OLCI product lies within the time range of the MISR product.
+ */
+class ProductPairing {
+
+    private static final int MIN_NAME_LENGTH = 47;
+
+    private final List<ProductFile> olciProducts = new ArrayList<>();
+    private final List<ProductFile> slstrProducts = new ArrayList<>();
+    private final List<ProductFile> misrProducts = new ArrayList<>();
+    private final List<File> unpaired = new ArrayList<>();
+
+    /**
+     * Adds the products found in the given directory. Files and directories which are not OLCI L1, SLSTR RBT or
+     * MISR products are ignored.
+     */
+    void addDirectory(File dir) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            add(file);
+        }
+    }
+
+    /**
+     * @return true if the file is an OLCI L1, SLSTR RBT or MISR product
+     */
+    boolean add(File file) {
+        final ProductFile productFile = ProductFile.parse(file);
+        if (productFile == null) {
+            return false;
+        }
+        if (productFile.type.startsWith("OL_1_")) {
+            olciProducts.add(productFile);
+        } else if (productFile.type.startsWith("SL_1_RBT")) {
+            slstrProducts.add(productFile);
+        } else if (productFile.type.startsWith("SY_1_MISR")) {
+            misrProducts.add(productFile);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pairs the added products.
+     *
+     * @return the pairs grouped by MISR product, ordered by the start time of the OLCI products. Pairs without
+     * MISR product are grouped under the key {@code null}.
+     */
+    Map<File, List<Pair>> createGroups() {
+        final List<Pair> candidates = new ArrayList<>();
+        for (ProductFile olci : olciProducts) {
+            for (ProductFile slstr : slstrProducts) {
+                if (olci.mission.equals(slstr.mission)
+                        && Math.abs(slstr.startTime - olci.startTime) / 1000L <= L1cSynOp.ALLOWED_TIME_DIFF
+                        && L1cSynOp.isTimeDifferenceAllowed(slstr.startTime, olci.endTime)) {
+                    candidates.add(new Pair(olci, slstr, null));
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingLong(Pair::getTimeDifference));
+
+        final Set<ProductFile> used = new HashSet<>();
+        final List<Pair> pairs = new ArrayList<>();
+        for (Pair candidate : candidates) {
+            if (!used.contains(candidate.olci) && !used.contains(candidate.slstr)) {
+                used.add(candidate.olci);
+                used.add(candidate.slstr);
+                pairs.add(new Pair(candidate.olci, candidate.slstr, findMisrProduct(candidate.olci)));
+            }
+        }
+        unpaired.clear();
+        for (ProductFile productFile : olciProducts) {
+            if (!used.contains(productFile)) {
+                unpaired.add(productFile.file);
+            }
+        }
+        for (ProductFile productFile : slstrProducts) {
+            if (!used.contains(productFile)) {
+                unpaired.add(productFile.file);
+            }
+        }
+
+        pairs.sort(Comparator.comparingLong(pair -> pair.olci.startTime));
+        final Map<File, List<Pair>> groups = new LinkedHashMap<>();
+        for (Pair pair : pairs) {
+            groups.computeIfAbsent(pair.getMisrProduct(), k -> new ArrayList<>()).add(pair);
+        }
+        return groups;
+    }
+
+    /**
+     * @return the OLCI and SLSTR products which were not paired by the last call of {@link #createGroups()}
+     */
+    List<File> getUnpaired() {
+        return unpaired;
+    }
+
+    private File findMisrProduct(ProductFile olci) {
+        ProductFile closest = null;
+        for (ProductFile misr : misrProducts) {
+            if (misr.mission.equals(olci.mission) && misr.startTime <= olci.startTime && olci.startTime <= misr.endTime) {
+                if (closest == null || olci.startTime - misr.startTime < olci.startTime - closest.startTime) {
+                    closest = misr;
+                }
+            }
+        }
+        return closest != null ? closest.file : null;
+    }
+
+    /**
+     * An OLCI and an SLSTR product to be processed together, optionally with a MISR product.
+     */
+    static final class Pair {
+        private final ProductFile olci;
+        private final ProductFile slstr;
+        private final File misrProduct;
+
+        private Pair(ProductFile olci, ProductFile slstr, File misrProduct) {
+            this.olci = olci;
+            this.slstr = slstr;
+            this.misrProduct = misrProduct;
+        }
+
+        File getOlciProduct() {
+            return olci.file;
+        }
+
+        File getSlstrProduct() {
+            return slstr.file;
+        }
+
+        /**
+         * @return the MISR product or null if there is none covering the pair
+         */
+        File getMisrProduct() {
+            return misrProduct;
+        }
+
+        private long getTimeDifference() {
+            return Math.abs(slstr.startTime - olci.startTime);
+        }
+
+        @Override
+        public String toString() {
+            return olci.file.getName() + " + " + slstr.file.getName();
+        }
+    }
+
+    private static final class ProductFile {
+        final File file;
+        final String mission;
+        final String type;
+        final long startTime;
+        final long endTime;
+
+        private ProductFile(File file, String mission, String type, long startTime, long endTime) {
+            this.file = file;
+            this.mission = mission;
+            this.type = type;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        static ProductFile parse(File file) {
+            final String name = file.getName();
+            if (name.length() < MIN_NAME_LENGTH || !name.startsWith("S3") || name.charAt(15) != '_' || name.charAt(31) != '_') {
+                return null;
+            }
+            final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
+            dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+            dateFormat.setLenient(false);
+            try {
+                final long startTime = dateFormat.parse(name.substring(16, 31)).getTime();
+                final long endTime = dateFormat.parse(name.substring(32, 47)).getTime();
+                return new ProductFile(file, name.substring(0, 3), name.substring(4, 15), startTime, endTime);
+            } catch (ParseException e) {
+                return null;
+            }
+        }
+    }
+}
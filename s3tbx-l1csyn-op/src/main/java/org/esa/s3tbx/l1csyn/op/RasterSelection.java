@@ -0,0 +1,157 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.snap.core.dataio.geocoding.ComponentGeoCoding;
+import org.esa.snap.core.dataio.geocoding.GeoRaster;
+import org.esa.snap.core.dataop.barithm.BandArithmetic;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.Mask;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.RasterDataNode;
+import org.esa.snap.core.datamodel.TiePointGeoCoding;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.esa.snap.core.jexp.ParseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the bands and tie-point grids of a source product selected by the band parameters of {@link L1cSynOp}.
+ * <p>
+ * A name is selected if it matches one of the patterns completely, the pattern "All" selects everything. The
+ * required rasters additionally contain the rasters the selected ones depend on: the rasters referenced by
+ * expressions of virtual bands, masks and valid pixel expressions, including the flag bands of flag references,
+ * and the latitude and longitude rasters of their geo-coding. Only the required rasters are passed into the processing graph, the rasters which are not selected
+ * are removed from the target product afterwards.
+ */
+final class RasterSelection {
+
+    static final String ALL = "All";
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private RasterSelection() {
+    }
+
+    /**
+     * @return true if the patterns select all rasters
+     */
+    static boolean isAll(String[] patterns) {
+        return Arrays.asList(patterns).contains(ALL);
+    }
+
+    /**
+     * @return the names of the bands and tie-point grids of the product which are selected by the patterns
+     */
+    static String[] getSelectedNames(Product product, String[] patterns) {
+        final List<String> names = new ArrayList<>(Arrays.asList(product.getBandNames()));
+        names.addAll(Arrays.asList(product.getTiePointGridNames()));
+        if (isAll(patterns)) {
+            return names.toArray(new String[0]);
+        }
+        final Pattern pattern = Pattern.compile("\\b(" + String.join("|", patterns) + ")\\b");
+        final List<String> selected = new ArrayList<>();
+        for (String name : names) {
+            if (pattern.matcher(name).matches()) {
+                selected.add(name);
+            }
+        }
+        return selected.toArray(new String[0]);
+    }
+
+    /**
+     * @return the names of the selected rasters and of the rasters they depend on, in the order of the product
+     */
+    static Set<String> getRequiredNames(Product product, String[] patterns) {
+        final Set<String> required = new LinkedHashSet<>();
+        final Deque<String> pending = new ArrayDeque<>(Arrays.asList(getSelectedNames(product, patterns)));
+        while (!pending.isEmpty()) {
+            final String name = pending.poll();
+            final RasterDataNode raster = product.getRasterDataNode(name);
+            if (raster == null || !required.add(name)) {
+                continue;
+            }
+            if (raster instanceof VirtualBand) {
+                addReferencedNames(product, ((VirtualBand) raster).getExpression(), pending);
+            } else if (raster instanceof Mask && ((Mask) raster).getImageType() == Mask.BandMathsType.INSTANCE) {
+                addReferencedNames(product, Mask.BandMathsType.getExpression((Mask) raster), pending);
+            }
+            addReferencedNames(product, raster.getValidPixelExpression(), pending);
+            addGeoCodingNames(raster.getGeoCoding(), pending);
+        }
+        final Set<String> ordered = new LinkedHashSet<>();
+        for (String name : getSelectedNames(product, new String[]{ALL})) {
+            if (required.contains(name)) {
+                ordered.add(name);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * @return the names of the bands in the given set of raster names
+     */
+    static String[] getBandNames(Product product, Set<String> names) {
+        final List<String> bandNames = new ArrayList<>();
+        for (Band band : product.getBands()) {
+            if (names.contains(band.getName())) {
+                bandNames.add(band.getName());
+            }
+        }
+        return bandNames.toArray(new String[0]);
+    }
+
+    /**
+     * @return the names of the tie-point grids in the given set of raster names
+     */
+    static String[] getTiePointGridNames(Product product, Set<String> names) {
+        final List<String> gridNames = new ArrayList<>();
+        for (String gridName : product.getTiePointGridNames()) {
+            if (names.contains(gridName)) {
+                gridNames.add(gridName);
+            }
+        }
+        return gridNames.toArray(new String[0]);
+    }
+
+    private static void addReferencedNames(Product product, String expression, Deque<String> pending) {
+        if (expression == null || expression.trim().isEmpty()) {
+            return;
+        }
+        try {
+            for (RasterDataNode raster : BandArithmetic.getRefRasters(expression, product)) {
+                pending.add(raster.getName());
+            }
+        } catch (ParseException e) {
+            // the expression is invalid for the product, so every identifier which names a raster is taken as
+            // reference, the flag band of a flag reference 'band.FLAG' included
+            final Matcher matcher = IDENTIFIER.matcher(expression);
+            while (matcher.find()) {
+                final String identifier = matcher.group();
+                final int dotIndex = identifier.indexOf('.');
+                final String name = dotIndex > 0 ? identifier.substring(0, dotIndex) : identifier;
+                if (product.getRasterDataNode(name) != null) {
+                    pending.add(name);
+                }
+            }
+        }
+    }
+
+    private static void addGeoCodingNames(GeoCoding geoCoding, Deque<String> pending) {
+        if (geoCoding instanceof TiePointGeoCoding) {
+            pending.add(((TiePointGeoCoding) geoCoding).getLatGrid().getName());
+            pending.add(((TiePointGeoCoding) geoCoding).getLonGrid().getName());
+        } else if (geoCoding instanceof ComponentGeoCoding) {
+            final GeoRaster geoRaster = ((ComponentGeoCoding) geoCoding).getGeoRaster();
+            pending.add(geoRaster.getLatVariableName());
+            pending.add(geoRaster.getLonVariableName());
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import com.bc.ceres.core.ProgressMonitor;
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.FlagCoding;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.gpf.Operator;
+import org.esa.snap.core.gpf.OperatorException;
+import org.esa.snap.core.gpf.OperatorSpi;
+import org.esa.snap.core.gpf.Tile;
+import org.esa.snap.core.gpf.annotations.OperatorMetadata;
+import org.esa.snap.core.gpf.annotations.Parameter;
+import org.esa.snap.core.gpf.annotations.SourceProduct;
+import org.esa.snap.core.gpf.annotations.TargetProduct;
+import org.esa.snap.core.util.ProductUtils;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collocates the SLSTR bands onto the OLCI image grid without resampling the SLSTR product first.
+ * <p>
+ * Each SLSTR band is sampled from its own grid by nearest neighbour, only for the OLCI tiles which are requested.
+ * The positions are looked up once per tile for all SLSTR bands sharing a geo-coding. The OLCI bands are passed
+ * through unchanged.
+ */
+@OperatorMetadata(alias = "L1cSynCollocate",
+        internal = true,
+        category = "Raster/Geometric",
+        version = "1.0",
+        copyright = "(c) 2019 by Brockmann Consult",
+        description = "Collocates the bands of an SLSTR L1 product onto the grid of an OLCI L1 product by nearest neighbour."
+)
+public class SlstrCollocationOp extends Operator {
+
+    static final String PRODUCT_TYPE = "S3_L1C_SYN";
+
+    @SourceProduct(alias = "olciSource", description = "OLCI source product")
+    private Product olciSourceProduct;
+
+    @SourceProduct(alias = "slstrSource", description = "SLSTR source product")
+    private Product slstrSourceProduct;
+
+    @Parameter(description = "Collects the metrics of the tile computation. If not given, the metrics are not passed on.")
+    private ProcessingReport processingReport;
+
+    @TargetProduct
+    private Product targetProduct;
+
+    private Map<Band, Band> sourceBands;
+
+    @Override
+    public void initialize() throws OperatorException {
+        if (olciSourceProduct.getSceneGeoCoding() == null) {
+            throw new OperatorException("OLCI product has no geo-coding");
+        }
+        if (processingReport == null) {
+            processingReport = new ProcessingReport();
+        }
+        sourceBands = new HashMap<>();
+        targetProduct = createTargetProduct(olciSourceProduct, slstrSourceProduct, sourceBands);
+        // the SLSTR bands of a tile are computed together by computeTileStack, even if only one of them is requested
+        setRequiresAllBands(true);
+    }
+
+    @Override
+    public void computeTileStack(Map<Band, Tile> targetTiles, Rectangle targetRectangle, ProgressMonitor pm) {
+        // the bands on the same SLSTR grid share the positions, so they are only looked up once per tile
+        final Map<List<Object>, List<Band>> bandGroups = new LinkedHashMap<>();
+        for (Band targetBand : targetTiles.keySet()) {
+            final Band sourceBand = sourceBands.get(targetBand);
+            if (sourceBand != null) {
+                final List<Object> key = Arrays.asList(sourceBand.getGeoCoding(), sourceBand.getRasterWidth(),
+                                                       sourceBand.getRasterHeight());
+                bandGroups.computeIfAbsent(key, k -> new ArrayList<>()).add(targetBand);
+            }
+        }
+        for (List<Band> targetBands : bandGroups.values()) {
+            computeTiles(targetBands, targetTiles, targetRectangle);
+        }
+    }
+
+    @Override
+    public void computeTile(Band targetBand, Tile targetTile, ProgressMonitor pm) {
+        if (sourceBands.containsKey(targetBand)) {
+            computeTiles(Collections.singletonList(targetBand), Collections.singletonMap(targetBand, targetTile),
+                         targetTile.getRectangle());
+        }
+    }
+
+    // the target bands share the grid of their source bands
+    private void computeTiles(List<Band> targetBands, Map<Band, Tile> targetTiles, Rectangle targetRectangle) {
+        try (ProcessingReport.Stage ignored = processingReport.start("tile", ProcessingReport.ALL_BAND_TYPES)) {
+            final Band firstSourceBand = sourceBands.get(targetBands.get(0));
+            final int[] positions = new int[targetRectangle.width * targetRectangle.height];
+            final Rectangle sourceRectangle = computeSourcePositions(olciSourceProduct.getSceneGeoCoding(),
+                                                                     firstSourceBand.getGeoCoding(),
+                                                                     firstSourceBand.getRasterWidth(),
+                                                                     firstSourceBand.getRasterHeight(),
+                                                                     targetRectangle, positions);
+            for (Band targetBand : targetBands) {
+                final Band sourceBand = sourceBands.get(targetBand);
+                final Tile targetTile = targetTiles.get(targetBand);
+                final Tile sourceTile = sourceRectangle.isEmpty() ? null : getSourceTile(sourceBand, sourceRectangle);
+                final double noDataValue = targetBand.scale(targetBand.getNoDataValue());
+                final int sourceWidth = sourceBand.getRasterWidth();
+                int mappedCount = 0;
+                for (int y = targetRectangle.y, i = 0; y < targetRectangle.y + targetRectangle.height; y++) {
+                    for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++, i++) {
+                        final int position = positions[i];
+                        if (position >= 0 && sourceTile != null) {
+                            targetTile.setSample(x, y, sourceTile.getSampleDouble(position % sourceWidth, position / sourceWidth));
+                            mappedCount++;
+                        } else {
+                            targetTile.setSample(x, y, noDataValue);
+                        }
+                    }
+                }
+                processingReport.countPixels(ProcessingReport.ALL_BAND_TYPES, mappedCount, 0, 0);
+            }
+        }
+    }
+
+    /**
+     * Looks up the nearest source pixel of each pixel of the target rectangle.
+     *
+     * @param positions receives the source pixel index {@code y * sourceWidth + x} of each target pixel, or -1 if the
+     *                  target pixel is not covered by the source raster
+     * @return the bounds of the source pixels, empty if no target pixel is covered
+     */
+    static Rectangle computeSourcePositions(GeoCoding targetGeoCoding, GeoCoding sourceGeoCoding,
+                                            int sourceWidth, int sourceHeight, Rectangle targetRectangle,
+                                            int[] positions) {
+        final PixelPos targetPos = new PixelPos();
+        final PixelPos sourcePos = new PixelPos();
+        final GeoPos geoPos = new GeoPos();
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = -1;
+        int maxY = -1;
+        for (int y = targetRectangle.y, i = 0; y < targetRectangle.y + targetRectangle.height; y++) {
+            for (int x = targetRectangle.x; x < targetRectangle.x + targetRectangle.width; x++, i++) {
+                positions[i] = -1;
+                targetPos.setLocation(x + 0.5, y + 0.5);
+                targetGeoCoding.getGeoPos(targetPos, geoPos);
+                if (!geoPos.isValid()) {
+                    continue;
+                }
+                sourceGeoCoding.getPixelPos(geoPos, sourcePos);
+                if (!sourcePos.isValid()) {
+                    continue;
+                }
+                final int sourceX = (int) Math.floor(sourcePos.x);
+                final int sourceY = (int) Math.floor(sourcePos.y);
+                if (sourceX < 0 || sourceY < 0 || sourceX >= sourceWidth || sourceY >= sourceHeight) {
+                    continue;
+                }
+                positions[i] = sourceY * sourceWidth + sourceX;
+                minX = Math.min(minX, sourceX);
+                minY = Math.min(minY, sourceY);
+                maxX = Math.max(maxX, sourceX);
+                maxY = Math.max(maxY, sourceY);
+            }
+        }
+        if (maxX < 0) {
+            return new Rectangle();
+        }
+        return new Rectangle(minX, minY, maxX - minX + 1, maxY - minY + 1);
+    }
+
+    /**
+     * Creates the target product on the OLCI grid. The OLCI bands are copied with their images, the SLSTR bands
+     * having a geo-coding are added with their properties and registered in the given map with their source band.
+     */
+    static Product createTargetProduct(Product olciSourceProduct, Product slstrSourceProduct, Map<Band, Band> sourceBands) {
+        final int width = olciSourceProduct.getSceneRasterWidth();
+        final int height = olciSourceProduct.getSceneRasterHeight();
+        final Product targetProduct = new Product(olciSourceProduct.getName(), PRODUCT_TYPE, width, height);
+
+        for (Band olciBand : olciSourceProduct.getBands()) {
+            ProductUtils.copyBand(olciBand.getName(), olciSourceProduct, targetProduct, true);
+        }
+
+        for (Band slstrBand : slstrSourceProduct.getBands()) {
+            // the orphan bands are removed from the L1C product anyway
+            if (slstrBand.getGeoCoding() == null || slstrBand.getName().contains("orphan")
+                    || targetProduct.containsBand(slstrBand.getName())) {
+                continue;
+            }
+            final Band targetBand = new Band(slstrBand.getName(), slstrBand.getDataType(), width, height);
+            targetBand.setDescription(slstrBand.getDescription());
+            targetBand.setUnit(slstrBand.getUnit());
+            targetBand.setScalingFactor(slstrBand.getScalingFactor());
+            targetBand.setScalingOffset(slstrBand.getScalingOffset());
+            targetBand.setNoDataValue(getNoDataValue(slstrBand));
+            targetBand.setNoDataValueUsed(slstrBand.isNoDataValueUsed() || isFloatingPoint(slstrBand));
+            targetBand.setValidPixelExpression(slstrBand.getValidPixelExpression());
+            ProductUtils.copySpectralBandProperties(slstrBand, targetBand);
+            if (slstrBand.isFlagBand()) {
+                FlagCoding flagCoding = targetProduct.getFlagCodingGroup().get(slstrBand.getFlagCoding().getName());
+                if (flagCoding == null) {
+                    flagCoding = ProductUtils.copyFlagCoding(slstrBand.getFlagCoding(), targetProduct);
+                }
+                targetBand.setSampleCoding(flagCoding);
+            }
+            targetProduct.addBand(targetBand);
+            sourceBands.put(targetBand, slstrBand);
+        }
+
+        ProductUtils.copyMetadata(olciSourceProduct, targetProduct);
+        ProductUtils.copyTiePointGrids(olciSourceProduct, targetProduct);
+        ProductUtils.copyMasks(olciSourceProduct, targetProduct);
+        ProductUtils.copyMasks(slstrSourceProduct, targetProduct);
+        ProductUtils.copyGeoCoding(olciSourceProduct, targetProduct);
+        targetProduct.setStartTime(olciSourceProduct.getStartTime());
+        targetProduct.setEndTime(olciSourceProduct.getEndTime());
+        return targetProduct;
+    }
+
+    // the raw value written where the SLSTR band has no data, NaN for floating point bands without no-data value
+    private static double getNoDataValue(Band band) {
+        if (!band.isNoDataValueUsed() && isFloatingPoint(band)) {
+            return Double.NaN;
+        }
+        return band.getNoDataValue();
+    }
+
+    private static boolean isFloatingPoint(Band band) {
+        return band.getDataType() == ProductData.TYPE_FLOAT32 || band.getDataType() == ProductData.TYPE_FLOAT64;
+    }
+
+    public static class Spi extends OperatorSpi {
+        public Spi() {
+            super(SlstrCollocationOp.class);
+        }
+    }
+}
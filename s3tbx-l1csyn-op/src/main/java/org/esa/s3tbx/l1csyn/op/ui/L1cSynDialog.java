@@ -1,15 +1,19 @@
 package org.esa.s3tbx.l1csyn.op.ui;
 
 import com.bc.ceres.binding.PropertyContainer;
+import com.bc.ceres.core.ProgressMonitor;
 import com.bc.ceres.swing.TableLayout;
 import com.bc.ceres.swing.binding.BindingContext;
 import com.bc.ceres.swing.binding.PropertyPane;
+import com.bc.ceres.swing.progress.ProgressMonitorSwingWorker;
 import com.bc.ceres.swing.selection.SelectionChangeEvent;
 import com.bc.ceres.swing.selection.SelectionChangeListener;
+import org.esa.s3tbx.l1csyn.op.L1cSynOp;
 import org.esa.s3tbx.l1csyn.op.L1cSynUtils;
 import org.esa.snap.core.datamodel.Product;
 import org.esa.snap.core.datamodel.ProductFilter;
 import org.esa.snap.core.gpf.GPF;
+import org.esa.snap.core.gpf.Operator;
 import org.esa.snap.core.gpf.OperatorSpi;
 import org.esa.snap.core.gpf.annotations.ParameterDescriptorFactory;
 import org.esa.snap.core.gpf.annotations.SourceProduct;
@@ -20,6 +24,7 @@ import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
 
 public class L1cSynDialog extends SingleTargetProductDialog {
 
@@ -44,10 +49,29 @@ public class L1cSynDialog extends SingleTargetProductDialog {
         initialize(operatorName);
     }
 
+    // the MISR pixel maps are derived in the background, their progress is shown and can be cancelled
     @Override
-    protected Product createTargetProduct() {
+    protected Product createTargetProduct() throws Exception {
         final HashMap<String, Product> sourceProducts = createSourceProductsMap();
-        return GPF.createProduct(operatorName, parameterMap, sourceProducts);
+        final Operator operator = operatorSpi.createOperator(parameterMap, sourceProducts);
+        final ProgressMonitorSwingWorker<Product, Void> worker = new ProgressMonitorSwingWorker<Product, Void>(getJDialog(), "Initialising L1C SYN product") {
+            @Override
+            protected Product doInBackground(ProgressMonitor pm) {
+                if (operator instanceof L1cSynOp) {
+                    ((L1cSynOp) operator).setProgressMonitor(pm);
+                }
+                return operator.getTargetProduct();
+            }
+        };
+        worker.executeWithBlocking();
+        try {
+            return worker.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
     }
 
     @Override
@@ -182,8 +206,22 @@ public class L1cSynDialog extends SingleTargetProductDialog {
         form.add("Processing Parameters", scrollPane);
         parametersPane.getBindingContext().bindEnabledState("reprojectionCRS",false,"stayOnOlciGrid",true);
         parametersPane.getBindingContext().bindEnabledState("upsamplingMethod",false,"stayOnOlciGrid",true);
+        parametersPane.getBindingContext().bindEnabledState("directCollocation",false,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("directCollocation",true,"useMISR",false);
         parametersPane.getBindingContext().bindEnabledState("misrFile",true,"useMISR",true);
         parametersPane.getBindingContext().bindEnabledState("misrFile",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("misrCacheDir",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("misrCacheDir",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("misrThreads",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("misrThreads",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("misrChunkLines",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("misrChunkLines",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("misrCameraThreads",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("misrCameraThreads",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("misrStorage",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("misrStorage",false,"useMISR",false);
+        parametersPane.getBindingContext().bindEnabledState("scratchDir",true,"useMISR",true);
+        parametersPane.getBindingContext().bindEnabledState("scratchDir",false,"useMISR",false);
     }
 
     private void setSourceProductSelectorToolTipTexts() {
@@ -0,0 +1,42 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.BufferStorage;
+import org.esa.s3tbx.l1csyn.coreg.CoregistrationSession;
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class MisrMemoryTest {
+
+    @Test
+    public void testLeastRecentlyUsedMapsAreDropped() {
+        // each map of 10x10 pixels takes 800 bytes
+        final MisrMemory memory = new MisrMemory(2000, 1);
+        final CorrespondenceIndex map1 = new CorrespondenceIndex.Builder(10, 10).build();
+        final CorrespondenceIndex map2 = new CorrespondenceIndex.Builder(10, 10).build();
+        final CorrespondenceIndex map3 = new CorrespondenceIndex.Builder(10, 10).build();
+        memory.putMap("key", "S3PixelMap", map1);
+        memory.putMap("key", "S3OrphanMap", map2);
+        assertSame(map1, memory.getMap("key", "S3PixelMap"));
+
+        memory.putMap("other", "S3PixelMap", map3);
+        assertSame(map1, memory.getMap("key", "S3PixelMap"));
+        assertNull(memory.getMap("key", "S3OrphanMap"));
+        assertSame(map3, memory.getMap("other", "S3PixelMap"));
+        assertEquals(1600, memory.getUsedMapBytes());
+    }
+
+    @Test
+    public void testSessionsAreReused() {
+        final MisrMemory memory = new MisrMemory(0, 1);
+        final File manifest = new File("misr/xfdumanifest.xml");
+        final CoregistrationSession session = memory.getSession(manifest, new File("slstr1"), 10, BufferStorage.HEAP, 1);
+        assertSame(session, memory.getSession(manifest, new File("slstr1"), 10, BufferStorage.HEAP, 1));
+        assertNotSame(session, memory.getSession(manifest, new File("slstr1"), 10, BufferStorage.DIRECT, 1));
+        // only one session is kept
+        assertNotSame(session, memory.getSession(manifest, new File("slstr1"), 10, BufferStorage.HEAP, 1));
+    }
+}
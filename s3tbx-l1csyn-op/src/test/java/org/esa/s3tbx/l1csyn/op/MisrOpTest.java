@@ -0,0 +1,18 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MisrOpTest {
+
+    @Test
+    public void testSelectBandType() {
+        assertEquals("S1", MisrOp.selectBandType("S1_radiance_an"));
+        assertEquals("S5", MisrOp.selectBandType("S5_radiance_bn"));
+        assertEquals("S3", MisrOp.selectBandType("S8_BT_an"));
+        assertEquals("ao", MisrOp.selectBandType("S3_radiance_ao"));
+        assertEquals("co", MisrOp.selectBandType("S6_radiance_co"));
+        assertNull(MisrOp.selectBandType("latitude_tx"));
+    }
+}
@@ -0,0 +1,185 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.s3tbx.l1csyn.coreg.CorrespondenceIndex;
+import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.esa.snap.core.datamodel.GeoPos;
+import org.esa.snap.core.datamodel.PixelPos;
+import org.esa.snap.core.util.math.EuclideanDistance;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NeighborFillIndexTest {
+
+    @Test
+    public void testComputeChebyshevDistances() {
+        CorrespondenceIndex map = new CorrespondenceIndex.Builder(7, 3)
+                .put(1, 1, 0, 0)
+                .build();
+
+        byte[] distances = NeighborFillIndex.computeChebyshevDistances(map, 2);
+
+        assertEquals(0, distances[7 + 1]);
+        assertEquals(1, distances[0]);
+        assertEquals(1, distances[2 * 7 + 2]);
+        assertEquals(2, distances[3]);
+        assertEquals(2, distances[2 * 7 + 3]);
+        // further away than the maximum distance
+        assertEquals(3, distances[7 + 4]);
+        assertEquals(3, distances[2 * 7 + 6]);
+    }
+
+    @Test
+    public void testComputeChebyshevDistances_emptyMap() {
+        CorrespondenceIndex map = new CorrespondenceIndex.Builder(4, 4).build();
+
+        byte[] distances = NeighborFillIndex.computeChebyshevDistances(map, 4);
+
+        for (byte distance : distances) {
+            assertEquals(5, distance);
+        }
+    }
+
+    @Test
+    public void testSameNeighborAsWindowSearch() throws Exception {
+        final Scene scene = new Scene();
+        final NeighborFillIndex fillIndex = NeighborFillIndex.create(scene.map, scene.olciGeoCoding, scene.slstrGeoCoding);
+
+        for (int y = 0; y < Scene.SIZE; y++) {
+            for (int x = 0; x < Scene.SIZE; x++) {
+                final int[] expected = scene.searchNeighbor(x, y);
+                final String pixel = String.format("(%d,%d)", x, y);
+                if (expected == null) {
+                    assertEquals(pixel, NeighborFillIndex.NO_NEIGHBOR, fillIndex.getSourceX(x, y));
+                    assertEquals(pixel, NeighborFillIndex.NO_NEIGHBOR, fillIndex.getSourceY(x, y));
+                } else {
+                    assertEquals(pixel, expected[0], fillIndex.getSourceX(x, y));
+                    assertEquals(pixel, expected[1], fillIndex.getSourceY(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSameValueAsWindowSearchIfClosestNeighborHasNoData() throws Exception {
+        final Scene scene = new Scene();
+        final NeighborFillIndex fillIndex = NeighborFillIndex.create(scene.map, scene.olciGeoCoding, scene.slstrGeoCoding);
+
+        int fallbackCount = 0;
+        for (int y = 0; y < Scene.SIZE; y++) {
+            for (int x = 0; x < Scene.SIZE; x++) {
+                // as MisrOp.fillTile: the value of the indexed neighbour, the window search if it has no data
+                double value = Scene.NO_DATA;
+                final int sourceX = fillIndex.getSourceX(x, y);
+                final int sourceY = fillIndex.getSourceY(x, y);
+                if (sourceX != NeighborFillIndex.NO_NEIGHBOR) {
+                    value = scene.getValue(sourceX, sourceY);
+                    if (value == Scene.NO_DATA && (sourceX != x || sourceY != y)) {
+                        value = scene.searchValue(x, y);
+                        if (value != Scene.NO_DATA) {
+                            fallbackCount++;
+                        }
+                    }
+                }
+                assertEquals(String.format("(%d,%d)", x, y), scene.searchValue(x, y), value, 0.0);
+            }
+        }
+        // the closest neighbour of some pixels has no data, they are filled from a larger window
+        assertTrue(fallbackCount > 0);
+    }
+
+    /**
+     * A 16 x 16 OLCI raster with scattered holes, mapped onto an SLSTR raster of twice the resolution with jittered
+     * positions, so the closest neighbour depends on the geo-positions.
+     */
+    private static final class Scene {
+        static final int SIZE = 16;
+        static final double NO_DATA = -1.0;
+
+        final CorrespondenceIndex map;
+        final GeoCoding olciGeoCoding;
+        final GeoCoding slstrGeoCoding;
+
+        Scene() throws Exception {
+            final Random random = new Random(5);
+            final CorrespondenceIndex.Builder builder = new CorrespondenceIndex.Builder(SIZE, SIZE);
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    // a hole in the centre which is larger than the largest window, and scattered holes elsewhere
+                    final boolean centralHole = x >= 5 && x <= 10 && y >= 5 && y <= 10;
+                    if (!centralHole && random.nextInt(3) != 0) {
+                        builder.put(x, y, 2 * x + random.nextInt(2), 2 * y + random.nextInt(2));
+                    }
+                }
+            }
+            map = builder.build();
+            olciGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, SIZE, SIZE, 10.0, 50.0, 0.02, 0.02);
+            slstrGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 2 * SIZE, 2 * SIZE, 10.0, 50.0, 0.01, 0.01);
+        }
+
+        // the sample of the SLSTR pixel of a mapped OLCI pixel, the column left of the central hole has no data
+        double getValue(int x, int y) {
+            final int slstrX = map.getSlstrX(x, y);
+            final int slstrY = map.getSlstrY(x, y);
+            return slstrX / 2 == 4 ? NO_DATA : slstrY * 2 * SIZE + slstrX;
+        }
+
+        // the window search of MisrOp.getNeighborPixel, returning the position of the closest neighbour
+        int[] searchNeighbor(int x, int y) {
+            if (map.contains(x, y)) {
+                return new int[]{x, y};
+            }
+            for (int size = 3; size <= NeighborFillIndex.MAX_WINDOW_SIZE; size += 2) {
+                final int[] closest = searchClosest(x, y, size);
+                if (closest != null) {
+                    return closest;
+                }
+            }
+            return null;
+        }
+
+        // the window search of MisrOp.getNeighborPixel, which continues in larger windows if the closest has no data
+        double searchValue(int x, int y) {
+            if (map.contains(x, y)) {
+                return getValue(x, y);
+            }
+            for (int size = 3; size <= NeighborFillIndex.MAX_WINDOW_SIZE; size += 2) {
+                final int[] closest = searchClosest(x, y, size);
+                if (closest != null && getValue(closest[0], closest[1]) != NO_DATA) {
+                    return getValue(closest[0], closest[1]);
+                }
+            }
+            return NO_DATA;
+        }
+
+        // MisrOp.searchClosetPixel
+        private int[] searchClosest(int x, int y, int size) {
+            final GeoPos pixelGeoPos = olciGeoCoding.getGeoPos(new PixelPos(x, y), null);
+            final EuclideanDistance distanceMeasure = new EuclideanDistance(pixelGeoPos.getLon(), pixelGeoPos.getLat());
+            final int step = size / 2;
+            double distance = Double.MAX_VALUE;
+            int[] closest = null;
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    final int neighborX = x - step + i;
+                    final int neighborY = y - step + j;
+                    if (map.contains(neighborX, neighborY)) {
+                        final PixelPos slstrPos = new PixelPos(map.getSlstrX(neighborX, neighborY), map.getSlstrY(neighborX, neighborY));
+                        final GeoPos neighborGeoPos = slstrGeoCoding.getGeoPos(slstrPos, null);
+                        final double neighborDist = distanceMeasure.distance(neighborGeoPos.getLon(), neighborGeoPos.getLat());
+                        if (neighborDist < distance) {
+                            distance = neighborDist;
+                            closest = new int[]{neighborX, neighborY};
+                        }
+                    }
+                }
+            }
+            return closest;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ProcessingReportTest {
+
+    @Test
+    public void testStagesAreAccumulated() {
+        final ProcessingReport report = new ProcessingReport();
+        for (int i = 0; i < 3; i++) {
+            try (ProcessingReport.Stage ignored = report.start("tile", "S3")) {
+                assertNotNull(ignored);
+            }
+        }
+        try (ProcessingReport.Stage ignored = report.start("tile", "ao")) {
+            assertNotNull(ignored);
+        }
+
+        final String json = report.toJson("SYN");
+        assertTrue(json.contains("\"product\": \"SYN\""));
+        assertTrue(json.contains("{\"stage\": \"tile\", \"bandType\": \"S3\", \"calls\": 3,"));
+        assertTrue(json.contains("{\"stage\": \"tile\", \"bandType\": \"ao\", \"calls\": 1,"));
+    }
+
+    @Test
+    public void testPixelCounts() {
+        final ProcessingReport report = new ProcessingReport();
+        report.countPixels("S3", 10, 2, 1);
+        report.countPixels("S3", 5, 0, 3);
+        report.countPixels("ao", 7, 0, 0);
+
+        final String json = report.toJson("SYN");
+        assertTrue(json.contains("{\"bandType\": \"S3\", \"mapped\": 15, \"orphanFilled\": 2, \"neighbourFilled\": 4}"));
+        assertTrue(json.contains("{\"bandType\": \"ao\", \"mapped\": 7, \"orphanFilled\": 0, \"neighbourFilled\": 0}"));
+    }
+
+    @Test
+    public void testProductNameIsEscaped() {
+        final String json = new ProcessingReport().toJson("a\"b\\c");
+        assertTrue(json.contains("\"product\": \"a\\\"b\\\\c\""));
+    }
+}
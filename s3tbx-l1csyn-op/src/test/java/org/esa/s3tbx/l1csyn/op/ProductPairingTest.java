@@ -0,0 +1,69 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ProductPairingTest {
+
+    private static final String SUFFIX = "_0179_054_036_2160_LN1_O_NT_002.SEN3";
+
+    @Test
+    public void testPairsAreGroupedByMisrProduct() {
+        final ProductPairing pairing = new ProductPairing();
+        final File olci1 = file("S3A_OL_1_EFR____20200101T100000_20200101T100300");
+        final File olci2 = file("S3A_OL_1_EFR____20200101T100300_20200101T100600");
+        final File olci3 = file("S3A_OL_1_EFR____20200101T120000_20200101T120300");
+        final File slstr1 = file("S3A_SL_1_RBT____20200101T100010_20200101T100310");
+        final File slstr2 = file("S3A_SL_1_RBT____20200101T100305_20200101T100605");
+        final File slstr3 = file("S3A_SL_1_RBT____20200101T120030_20200101T120330");
+        final File misr = file("S3A_SY_1_MISR___20200101T095900_20200101T100700");
+        for (File file : new File[]{olci2, slstr1, olci1, slstr3, misr, olci3, slstr2}) {
+            assertTrue(pairing.add(file));
+        }
+
+        final Map<File, List<ProductPairing.Pair>> groups = pairing.createGroups();
+        assertEquals(2, groups.size());
+        final List<ProductPairing.Pair> misrGroup = groups.get(misr);
+        assertEquals(2, misrGroup.size());
+        assertEquals(olci1, misrGroup.get(0).getOlciProduct());
+        assertEquals(slstr1, misrGroup.get(0).getSlstrProduct());
+        assertEquals(olci2, misrGroup.get(1).getOlciProduct());
+        assertEquals(slstr2, misrGroup.get(1).getSlstrProduct());
+        final List<ProductPairing.Pair> noMisrGroup = groups.get(null);
+        assertEquals(1, noMisrGroup.size());
+        assertEquals(olci3, noMisrGroup.get(0).getOlciProduct());
+        assertEquals(slstr3, noMisrGroup.get(0).getSlstrProduct());
+        assertTrue(pairing.getUnpaired().isEmpty());
+    }
+
+    @Test
+    public void testProductsTooFarApartOrOfOtherMissionAreNotPaired() {
+        final ProductPairing pairing = new ProductPairing();
+        final File olci = file("S3A_OL_1_EFR____20200101T100000_20200101T100300");
+        final File slstrLate = file("S3A_SL_1_RBT____20200101T100400_20200101T100700");
+        final File slstrOtherMission = file("S3B_SL_1_RBT____20200101T100000_20200101T100300");
+        pairing.add(olci);
+        pairing.add(slstrLate);
+        pairing.add(slstrOtherMission);
+
+        assertTrue(pairing.createGroups().isEmpty());
+        assertEquals(3, pairing.getUnpaired().size());
+    }
+
+    @Test
+    public void testOtherFilesAreIgnored() {
+        final ProductPairing pairing = new ProductPairing();
+        assertFalse(pairing.add(new File("readme.txt")));
+        assertFalse(pairing.add(file("S3A_SL_2_LST____20200101T100000_20200101T100300")));
+        assertFalse(pairing.add(file("S3A_OL_1_EFR____2020010XT100000_20200101T100300")));
+    }
+
+    private static File file(String prefix) {
+        return new File("/data", prefix + SUFFIX);
+    }
+}
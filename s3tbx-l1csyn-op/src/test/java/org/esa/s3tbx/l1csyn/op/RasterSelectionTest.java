@@ -0,0 +1,73 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.snap.core.datamodel.Band;
+import org.esa.snap.core.datamodel.FlagCoding;
+import org.esa.snap.core.datamodel.Product;
+import org.esa.snap.core.datamodel.ProductData;
+import org.esa.snap.core.datamodel.VirtualBand;
+import org.junit.Test;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RasterSelectionTest {
+
+    @Test
+    public void testSelectedNames() {
+        final Product product = createProduct();
+
+        assertArrayEquals(new String[]{"Oa01_radiance", "Oa02_radiance"},
+                          RasterSelection.getSelectedNames(product, new String[]{"Oa0[12]_radiance"}));
+        assertEquals(5, RasterSelection.getSelectedNames(product, new String[]{RasterSelection.ALL}).length);
+        assertEquals(0, RasterSelection.getSelectedNames(product, new String[]{"Oa0"}).length);
+    }
+
+    @Test
+    public void testRequiredNamesContainDependencies() {
+        final Product product = createProduct();
+
+        final Set<String> required = RasterSelection.getRequiredNames(product, new String[]{"ratio"});
+        assertEquals(new HashSet<>(Arrays.asList("ratio", "Oa01_radiance", "Oa02_radiance", "quality_flags")), required);
+        assertArrayEquals(new String[]{"Oa01_radiance", "Oa02_radiance", "quality_flags", "ratio"},
+                          RasterSelection.getBandNames(product, required));
+    }
+
+    @Test
+    public void testRequiredNamesContainFlagBandOfFlagReference() {
+        final Product product = createProduct();
+        product.getBand("Oa03_radiance").setValidPixelExpression("!quality_flags.invalid");
+
+        final Set<String> required = RasterSelection.getRequiredNames(product, new String[]{"Oa03_radiance"});
+        assertEquals(new HashSet<>(Arrays.asList("Oa03_radiance", "quality_flags")), required);
+    }
+
+    @Test
+    public void testRequiredNamesFollowMaskExpressions() {
+        final Product product = createProduct();
+        product.addMask("bright", "Oa01_radiance > 100 && !quality_flags.invalid", "", Color.RED, 0.5);
+        product.getBand("Oa03_radiance").setValidPixelExpression("!bright");
+
+        final Set<String> required = RasterSelection.getRequiredNames(product, new String[]{"Oa03_radiance"});
+        // the mask itself is not a band or tie-point grid, but the rasters behind it are required
+        assertEquals(new HashSet<>(Arrays.asList("Oa01_radiance", "Oa03_radiance", "quality_flags")), required);
+    }
+
+    private static Product createProduct() {
+        final Product product = new Product("OLCI", "OL_1_EFR", 10, 10);
+        product.addBand("Oa01_radiance", ProductData.TYPE_FLOAT32);
+        final Band oa02 = product.addBand("Oa02_radiance", ProductData.TYPE_FLOAT32);
+        oa02.setValidPixelExpression("quality_flags != 1");
+        product.addBand("Oa03_radiance", ProductData.TYPE_FLOAT32);
+        final Band flagBand = product.addBand("quality_flags", ProductData.TYPE_UINT32);
+        final FlagCoding flagCoding = new FlagCoding("quality_flags");
+        flagCoding.addFlag("invalid", 1, "");
+        product.getFlagCodingGroup().add(flagCoding);
+        flagBand.setSampleCoding(flagCoding);
+        product.addBand(new VirtualBand("ratio", ProductData.TYPE_FLOAT32, 10, 10, "Oa01_radiance / Oa02_radiance"));
+        return product;
+    }
+}
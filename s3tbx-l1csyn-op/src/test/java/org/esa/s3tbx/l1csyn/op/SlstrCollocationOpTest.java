@@ -0,0 +1,47 @@
+package org.esa.s3tbx.l1csyn.op;
+
+import org.esa.snap.core.datamodel.CrsGeoCoding;
+import org.esa.snap.core.datamodel.GeoCoding;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.junit.Test;
+
+import java.awt.Rectangle;
+
+import static org.junit.Assert.*;
+
+public class SlstrCollocationOpTest {
+
+    @Test
+    public void testSourcePositionsOnFinerGrid() throws Exception {
+        final GeoCoding olciGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 10, 10, 10.0, 50.0, 0.02, 0.02);
+        final GeoCoding slstrGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 20, 20, 10.0, 50.0, 0.01, 0.01);
+        final Rectangle targetRectangle = new Rectangle(2, 3, 4, 2);
+        final int[] positions = new int[8];
+
+        final Rectangle sourceRectangle = SlstrCollocationOp.computeSourcePositions(olciGeoCoding, slstrGeoCoding, 20, 20,
+                                                                                    targetRectangle, positions);
+
+        // the centre of OLCI pixel x falls into SLSTR pixel 2 * x
+        assertEquals(6 * 20 + 4, positions[0]);
+        assertEquals(6 * 20 + 10, positions[3]);
+        assertEquals(8 * 20 + 4, positions[4]);
+        assertEquals(new Rectangle(4, 6, 7, 3), sourceRectangle);
+    }
+
+    @Test
+    public void testPixelsOutsideOfSourceAreNotMapped() throws Exception {
+        final GeoCoding olciGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 10, 10, 10.0, 50.0, 0.02, 0.02);
+        final GeoCoding slstrGeoCoding = new CrsGeoCoding(DefaultGeographicCRS.WGS84, 4, 4, 10.0, 50.0, 0.01, 0.01);
+        final int[] positions = new int[4];
+
+        final Rectangle sourceRectangle = SlstrCollocationOp.computeSourcePositions(olciGeoCoding, slstrGeoCoding, 4, 4,
+                                                                                    new Rectangle(0, 0, 4, 1), positions);
+
+        assertArrayEquals(new int[]{0, 2, -1, -1}, positions);
+        assertEquals(new Rectangle(0, 0, 3, 1), sourceRectangle);
+
+        final Rectangle emptyRectangle = SlstrCollocationOp.computeSourcePositions(olciGeoCoding, slstrGeoCoding, 4, 4,
+                                                                                   new Rectangle(5, 5, 2, 2), new int[4]);
+        assertTrue(emptyRectangle.isEmpty());
+    }
+}